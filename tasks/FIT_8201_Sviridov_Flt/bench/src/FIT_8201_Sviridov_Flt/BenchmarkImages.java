@@ -0,0 +1,101 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Class encapsulates inputs of benchmarks. Input is given by size parameter:
+ * either side of synthetic square image or "sample" for sample BMP file of
+ * the application. Path of sample file may be changed with system property
+ * <code>flt.sample</code>
+ * 
+ * @author alstein
+ */
+public class BenchmarkImages {
+
+	/**
+	 * Size parameter denoting sample BMP file
+	 */
+	public static final String SAMPLE = "sample";
+	/**
+	 * Default path of sample BMP file relative to module directory
+	 */
+	public static final String SAMPLE_FILE = "FIT_8201_Sviridov_Flt_Data/FIT_8201_Sviridov_Flt_1.bmp";
+
+	/**
+	 * Returns sample BMP file
+	 * 
+	 * @return file
+	 */
+	public static File getSampleFile() {
+		return new File(System.getProperty("flt.sample", SAMPLE_FILE));
+	}
+
+	/**
+	 * Makes image for size parameter
+	 * 
+	 * @param size
+	 *            side of square image or {@link #SAMPLE}
+	 * @return image
+	 * @throws IOException
+	 */
+	public static BufferedImage getImage(String size) throws IOException {
+		if (SAMPLE.equals(size)) {
+			return BmpImage.readBmpImage(getSampleFile());
+		}
+		int side = Integer.parseInt(size);
+		return getSyntheticImage(side, side);
+	}
+
+	/**
+	 * Returns number of pixels of image for size parameter
+	 * 
+	 * @param size
+	 *            side of square image or {@link #SAMPLE}
+	 * @return number of pixels
+	 * @throws IOException
+	 */
+	public static long getPixelCount(String size) throws IOException {
+		if (SAMPLE.equals(size)) {
+			Dimension d = BmpImage.readBmpSize(getSampleFile());
+			return (long) d.width * d.height;
+		}
+		long side = Integer.parseInt(size);
+		return side * side;
+	}
+
+	/**
+	 * Makes synthetic image: diagonal color gradients with pseudo-random
+	 * noise, so that both smooth areas and edges are present and results do
+	 * not depend on run
+	 * 
+	 * @param width
+	 *            width
+	 * @param height
+	 *            height
+	 * @return image
+	 */
+	public static BufferedImage getSyntheticImage(int width, int height) {
+		BufferedImage img = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		int data[] = Pixels.getPixels(img);
+		Random random = new Random(8201);
+		for (int h = 0; h < height; ++h) {
+			for (int w = 0; w < width; ++w) {
+				int noise = random.nextInt(64) - 32;
+				int r = 255 * w / width + noise;
+				int g = 255 * h / height + noise;
+				int b = 255 * (w + h) / (width + height) - noise;
+				r = Math.min(Math.max(r, 0), 255);
+				g = Math.min(Math.max(g, 0), 255);
+				b = Math.min(Math.max(b, 0), 255);
+				data[h * width + w] = r << 16 | g << 8 | b;
+			}
+		}
+		Pixels.setPixels(img, data);
+		return img;
+	}
+}
@@ -0,0 +1,75 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of BMP reading and writing. Files are kept in temporary
+ * directory, so results include file system cache but usually not disk
+ * 
+ * @author alstein
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g", "-Djava.awt.headless=true" })
+public class BmpImageBenchmark {
+
+	// field name is parameter name, see BenchmarkImages
+	@Param({ "256", "1024", "4096", "8192", BenchmarkImages.SAMPLE })
+	public String size;
+
+	private BufferedImage _img;
+	private File _input;
+	private File _output;
+
+	/**
+	 * Makes input image and writes it to temporary file
+	 * 
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		_img = BenchmarkImages.getImage(size);
+		_input = File.createTempFile("flt-bench-in", ".bmp");
+		_output = File.createTempFile("flt-bench-out", ".bmp");
+		BmpImage.writeBmpImage(_img, _input);
+	}
+
+	/**
+	 * Deletes temporary files
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		_input.delete();
+		_output.delete();
+	}
+
+	@Benchmark
+	public BufferedImage read() throws IOException {
+		return BmpImage.readBmpImage(_input);
+	}
+
+	@Benchmark
+	public void write() throws IOException {
+		BmpImage.writeBmpImage(_img, _output);
+	}
+}
@@ -0,0 +1,178 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of image filters, one per public {@link Filters} method
+ * producing image. Score is number of images processed per second, see
+ * {@link FltBenchmarks} for pixel throughput
+ * 
+ * @author alstein
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g", "-Djava.awt.headless=true" })
+public class FiltersBenchmark {
+
+	// field name is parameter name, see BenchmarkImages
+	@Param({ "256", "1024", "4096", "8192", BenchmarkImages.SAMPLE })
+	public String size;
+
+	private BufferedImage _img;
+	private OrderedDither _mask;
+	private double _matrix[][];
+
+	/**
+	 * Makes input image
+	 * 
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		_img = BenchmarkImages.getImage(size);
+		_mask = OrderedDither.getBayer(3);
+		_matrix = new double[][] { new double[] { 1.0 / 9, 1.0 / 9, 1.0 / 9 },
+				new double[] { 1.0 / 9, 1.0 / 9, 1.0 / 9 },
+				new double[] { 1.0 / 9, 1.0 / 9, 1.0 / 9 } };
+	}
+
+	@Benchmark
+	public BufferedImage greyscale() {
+		return Filters.getGreyscaleImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage negative() {
+		return Filters.getNegativeImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage gamma() {
+		return Filters.getGammaCorrectedImage(_img, 0.8);
+	}
+
+	@Benchmark
+	public BufferedImage contrast() {
+		return Filters.getContrastCorrectedImage(_img, 1.5);
+	}
+
+	@Benchmark
+	public BufferedImage brightness() {
+		return Filters.getBrightnessCorrectedImage(_img, 20);
+	}
+
+	@Benchmark
+	public BufferedImage blur() {
+		return Filters.getBlurImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage emboss() {
+		return Filters.getEmbossImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage sobel() {
+		return Filters.getSobelImage(_img, 100);
+	}
+
+	@Benchmark
+	public BufferedImage roberts() {
+		return Filters.getRobertsImage(_img, 30);
+	}
+
+	@Benchmark
+	public BufferedImage sharpen3() {
+		return Filters.getSharpen3Image(_img);
+	}
+
+	@Benchmark
+	public BufferedImage sharpen5() {
+		return Filters.getSharpen5Image(_img);
+	}
+
+	@Benchmark
+	public BufferedImage aquarelle() {
+		return Filters.getAquarelleImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage doubleScale() {
+		return Filters.getDoubleScaleImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage scaleHalfBicubic() {
+		return Filters.getScaledImage(_img, (_img.getWidth() + 1) / 2,
+				(_img.getHeight() + 1) / 2, Resampler.BICUBIC);
+	}
+
+	@Benchmark
+	public BufferedImage scaleHalfLanczos3() {
+		return Filters.getScaledImage(_img, (_img.getWidth() + 1) / 2,
+				(_img.getHeight() + 1) / 2, Resampler.LANCZOS3);
+	}
+
+	@Benchmark
+	public BufferedImage colorSmoothing5() {
+		return Filters.getColorSmoothedImage(_img, 5);
+	}
+
+	@Benchmark
+	public BufferedImage orderedDither() {
+		return Filters.getOrderedDitherImage(_img);
+	}
+
+	@Benchmark
+	public BufferedImage orderedDitherLevels() {
+		return Filters.getOrderedDitherImage(_img, _mask, 8, 8, 4);
+	}
+
+	@Benchmark
+	public BufferedImage floydSteinberg() {
+		return Filters.getFloydSteinbergDitheredImage(_img, 8, 8, 4);
+	}
+
+	@Benchmark
+	public BufferedImage convolution3() {
+		return Filters.applyConvolutionMatrix(_img, _matrix, 0, 0, 0);
+	}
+
+	@Benchmark
+	public BufferedImage boxBlur2() {
+		return Filters.getBoxBlurImage(_img, 2);
+	}
+
+	@Benchmark
+	public BufferedImage boxBlur50() {
+		return Filters.getBoxBlurImage(_img, 50);
+	}
+
+	@Benchmark
+	public BufferedImage gaussianBlur() {
+		return Filters.getGaussianBlurImage(_img, 10);
+	}
+
+	@Benchmark
+	public BufferedImage adaptiveThreshold() {
+		return Filters.getAdaptiveThresholdImage(_img, 15, 0.3);
+	}
+}
@@ -0,0 +1,109 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runner of JMH benchmarks of the module with GC profiler. Results are saved
+ * as JSON for comparison across runs, and pixel throughput and allocation
+ * per image of every image benchmark are printed after JMH report. Usage:
+ * 
+ * <pre>
+ * java -cp build/classes:bench/classes:JMH_JARS \
+ *     FIT_8201_Sviridov_Flt.FltBenchmarks [regexp [sizes [result.json]]]
+ * </pre>
+ * 
+ * where sizes is comma separated list of sizes, e.g. 256,1024,sample
+ * 
+ * @author alstein
+ */
+public class FltBenchmarks {
+
+	private static final String DEFAULT_INCLUDE = "FIT_8201_Sviridov_Flt\\..*Benchmark\\..*";
+	private static final String DEFAULT_RESULT = "flt-benchmarks.json";
+	// suffix of secondary result of GC profiler with bytes per operation
+	private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+	/**
+	 * Checks whether JVM may have vector module, i.e. its version is 16+
+	 * 
+	 * @return true if vector module may be added
+	 */
+	private static boolean hasVectorModule() {
+		String version = System.getProperty("java.specification.version");
+		try {
+			return !version.startsWith("1.") && Integer.parseInt(version) >= 16;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Entry point
+	 * 
+	 * @param args
+	 *            optional benchmark regexp, sizes and result file
+	 * @throws RunnerException
+	 * @throws IOException
+	 */
+	public static void main(String args[]) throws RunnerException,
+			IOException {
+		String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+		String result = args.length > 2 ? args[2] : DEFAULT_RESULT;
+
+		// JVM options given here replace ones of benchmark annotations
+		List<String> jvm_args = new ArrayList<String>();
+		jvm_args.add("-Xmx6g");
+		jvm_args.add("-Djava.awt.headless=true");
+		jvm_args.add("-Dflt.sample="
+				+ BenchmarkImages.getSampleFile().getAbsolutePath());
+		if (hasVectorModule()) {
+			jvm_args.add("--add-modules=jdk.incubator.vector");
+		}
+
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(include).addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON).result(result)
+				.jvmArgsAppend(jvm_args.toArray(new String[0]));
+		if (args.length > 1) {
+			builder.param("size", args[1].split(","));
+		}
+		Options options = builder.build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		System.out.println();
+		System.out.printf("%-45s %8s %12s %14s%n", "Benchmark", "size",
+				"Mpx/s", "bytes/image");
+		for (RunResult run : results) {
+			String size = run.getParams().getParam("size");
+			if (size == null) {
+				continue;
+			}
+			Result primary = run.getPrimaryResult();
+			double mpx = primary.getScore()
+					* BenchmarkImages.getPixelCount(size) / 1e6;
+			double alloc = Double.NaN;
+			for (Map.Entry<String, Result> e : run.getSecondaryResults()
+					.entrySet()) {
+				if (e.getKey().endsWith(ALLOC_NORM)) {
+					alloc = e.getValue().getScore();
+				}
+			}
+			System.out.printf("%-45s %8s %12.1f %14.0f%n", run.getParams()
+					.getBenchmark(), size, mpx, alloc);
+		}
+		System.out.println("results saved to " + result);
+	}
+}
@@ -0,0 +1,41 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of gradation helpers of {@link Filters}, which do not
+ * process images
+ * 
+ * @author alstein
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradationBenchmark {
+
+	private double _gradations[] = Filters.generateGradations(255, 8);
+	private double _value = 100.5;
+
+	@Benchmark
+	public double[] generateGradations() {
+		return Filters.generateGradations(255, 8);
+	}
+
+	@Benchmark
+	public double findClosestInGradation() {
+		return Filters.findClosestInGradation(_value, _gradations);
+	}
+}
@@ -0,0 +1,122 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing scalar and vector {@link PixelKernels} on one
+ * thread. Every benchmark processes all pixels of square image, so pixel
+ * throughput is printed by {@link FltBenchmarks}. Vector kernels need Java
+ * 16+ and compiled <code>src-vector</code>
+ * 
+ * @author alstein
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g",
+		"--add-modules=jdk.incubator.vector" })
+public class PixelKernelsBenchmark {
+
+	// field names are parameter names, see BenchmarkImages
+	@Param({ "1024", "4096" })
+	public String size;
+	@Param({ "scalar", "vector" })
+	public String kernels;
+
+	private PixelKernels _kernels;
+	private int _src[];
+	private int _dst[];
+	private short _magnitudes[];
+	private long _acc[];
+	private long _spread[];
+	private int _r[];
+	private int _g[];
+	private int _b[];
+
+	/**
+	 * Selects kernels and makes input
+	 * 
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if (kernels.equals("scalar")) {
+			_kernels = PixelKernels.getScalarInstance();
+		} else {
+			_kernels = PixelKernels.getInstance();
+			if (_kernels == PixelKernels.getScalarInstance()) {
+				throw new IllegalStateException(
+						"vector kernels are not available");
+			}
+		}
+		int n = (int) BenchmarkImages.getPixelCount(size);
+		Random random = new Random(8201);
+		_src = new int[n];
+		_dst = new int[n];
+		_magnitudes = new short[n];
+		_acc = new long[n];
+		_spread = new long[n];
+		for (int p = 0; p < n; ++p) {
+			_src[p] = random.nextInt() & 0xFFFFFF;
+			_magnitudes[p] = (short) random.nextInt(2041);
+			_spread[p] = random.nextInt(1 << 20);
+		}
+		_r = new int[LookupTable.LEVELS];
+		_g = new int[LookupTable.LEVELS];
+		_b = new int[LookupTable.LEVELS];
+		for (int v = 0; v < LookupTable.LEVELS; ++v) {
+			_r[v] = (255 - v) << 16;
+			_g[v] = (int) (255 * Math.sqrt(v / 255.0)) << 8;
+			_b[v] = v * v / 255;
+		}
+	}
+
+	@Benchmark
+	public int[] greyscale() {
+		_kernels.greyscale(_src, _dst, 0, _src.length);
+		return _dst;
+	}
+
+	@Benchmark
+	public int[] negative() {
+		_kernels.negative(_src, _dst, 0, _src.length);
+		return _dst;
+	}
+
+	@Benchmark
+	public int[] lookupTable() {
+		_kernels.map(_r, _g, _b, _src, 0, _dst, 0, _src.length);
+		return _dst;
+	}
+
+	@Benchmark
+	public int[] threshold() {
+		_kernels.threshold(_magnitudes, _dst, 0, _src.length, 700, 0,
+				0xFFFFFF);
+		return _dst;
+	}
+
+	@Benchmark
+	public long[] multiplyAdd() {
+		_kernels.multiplyAdd(_acc, _spread, 5, _spread, 4, _spread, 2, 0,
+				_acc.length);
+		return _acc;
+	}
+}
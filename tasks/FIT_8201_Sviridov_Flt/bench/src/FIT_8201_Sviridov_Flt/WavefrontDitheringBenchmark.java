@@ -0,0 +1,127 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmark measuring speedup of wavefront-parallel error diffusion over
+ * sequential scan for growing number of workers. Every parallel result is
+ * checked to be identical to the sequential one. Usage:
+ * 
+ * <pre>
+ * java -cp build/classes:bench/classes \
+ *     FIT_8201_Sviridov_Flt.WavefrontDitheringBenchmark [width height [repeats]]
+ * </pre>
+ * 
+ * Number of cores available to JVM can be limited with
+ * <code>-XX:ActiveProcessorCount</code>
+ * 
+ * @author alstein
+ */
+public class WavefrontDitheringBenchmark {
+
+	private static final int DEFAULT_WIDTH = 4096;
+	private static final int DEFAULT_HEIGHT = 4096;
+	private static final int DEFAULT_REPEATS = 5;
+
+	/**
+	 * Makes image filled with pseudo-random noise
+	 * 
+	 * @param width
+	 *            width
+	 * @param height
+	 *            height
+	 * @return image
+	 */
+	private static BufferedImage getNoiseImage(int width, int height) {
+		BufferedImage img = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		int data[] = Pixels.getPixels(img);
+		Random random = new Random(8201);
+		for (int p = 0; p < data.length; ++p) {
+			data[p] = random.nextInt() & 0xFFFFFF;
+		}
+		Pixels.setPixels(img, data);
+		return img;
+	}
+
+	/**
+	 * Returns best time of several runs of dithering
+	 * 
+	 * @param diffusion
+	 *            kernel
+	 * @param img
+	 *            image
+	 * @param workers
+	 *            number of workers
+	 * @param repeats
+	 *            number of runs
+	 * @return best time in nanoseconds
+	 */
+	private static long measure(ErrorDiffusion diffusion, BufferedImage img,
+			int workers, int repeats) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < repeats; ++i) {
+			long start = System.nanoTime();
+			diffusion.apply(img, 8, 8, 4, false, workers);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * Returns true if images have the same pixels
+	 * 
+	 * @param a
+	 *            image
+	 * @param b
+	 *            image
+	 * @return true if images are equal
+	 */
+	private static boolean isEqual(BufferedImage a, BufferedImage b) {
+		int a_data[] = Pixels.getPixels(a), b_data[] = Pixels.getPixels(b);
+		return Arrays.equals(a_data, b_data);
+	}
+
+	/**
+	 * Entry point
+	 * 
+	 * @param args
+	 *            optional width, height and number of repeats
+	 */
+	public static void main(String args[]) {
+		int width = args.length > 1 ? Integer.parseInt(args[0])
+				: DEFAULT_WIDTH;
+		int height = args.length > 1 ? Integer.parseInt(args[1])
+				: DEFAULT_HEIGHT;
+		int repeats = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_REPEATS;
+		int cores = TileScheduler.getParallelism();
+		BufferedImage img = getNoiseImage(width, height);
+
+		String names[] = { "Floyd-Steinberg", "Jarvis-Judice-Ninke", "Stucki" };
+		ErrorDiffusion kernels[] = { ErrorDiffusion.FLOYD_STEINBERG,
+				ErrorDiffusion.JARVIS_JUDICE_NINKE, ErrorDiffusion.STUCKI };
+		System.out.println("image " + width + "x" + height + ", " + cores
+				+ " cores");
+		for (int k = 0; k < kernels.length; ++k) {
+			BufferedImage expected = kernels[k].apply(img, 8, 8, 4, false, 1);
+			long base = measure(kernels[k], img, 1, repeats);
+			System.out.printf("%-20s workers %2d: %7.1f ms%n", names[k], 1,
+					base / 1e6);
+			for (int workers = 2; workers <= cores; workers *= 2) {
+				BufferedImage result = kernels[k].apply(img, 8, 8, 4, false,
+						workers);
+				if (!isEqual(expected, result)) {
+					throw new IllegalStateException(names[k]
+							+ " result depends on number of workers");
+				}
+				long time = measure(kernels[k], img, workers, repeats);
+				System.out.printf(
+						"%-20s workers %2d: %7.1f ms, speedup %.2f%n",
+						names[k], workers, time / 1e6, (double) base / time);
+			}
+		}
+	}
+}
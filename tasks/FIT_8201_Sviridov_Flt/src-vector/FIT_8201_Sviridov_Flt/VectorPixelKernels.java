@@ -0,0 +1,140 @@
+package FIT_8201_Sviridov_Flt;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Class encapsulates kernels implemented with Java Vector API: every
+ * iteration processes as many pixels as fit in the widest vector register
+ * (8 with AVX2, 16 with AVX-512). Tails of runs shorter than vector are
+ * processed by scalar kernels. Loaded by {@link PixelKernels} only if module
+ * <code>jdk.incubator.vector</code> is available, so this is the only class
+ * referring to it. Compiled separately with Java 16+:
+ * 
+ * <pre>
+ * javac --release 17 --add-modules jdk.incubator.vector -cp bin -d bin \
+ *     src-vector/FIT_8201_Sviridov_Flt/VectorPixelKernels.java
+ * </pre>
+ * 
+ * @author alstein
+ */
+public class VectorPixelKernels extends PixelKernels {
+
+	private static final VectorSpecies<Integer> INT = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Short> SHORT = VectorSpecies.of(
+			short.class, VectorShape.forBitSize(INT.vectorBitSize() / 2));
+	private static final VectorSpecies<Long> LONG = LongVector.SPECIES_PREFERRED;
+
+	/**
+	 * Constructor
+	 */
+	public VectorPixelKernels() {
+		if (INT.length() < 4) {
+			throw new UnsupportedOperationException("vectors are too short");
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "vector " + INT.vectorBitSize() + " bit";
+	}
+
+	@Override
+	public void greyscale(int src[], int dst[], int offset, int length) {
+		int bound = INT.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += INT.length()) {
+			IntVector rgb = IntVector.fromArray(INT, src, offset + i);
+			IntVector r = rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+			IntVector g = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+			IntVector b = rgb.and(0xFF);
+			IntVector n = r.mul(299).add(g.mul(587)).add(b.mul(114)).add(500);
+			// n / 1000 = (n / 8) / 125, the latter is exact multiplication
+			// by 2^22 / 125 rounded up for n / 8 < 2^15
+			IntVector y = n.lanewise(VectorOperators.LSHR, 3).mul(33555)
+					.lanewise(VectorOperators.LSHR, 22);
+			// exact quotient is equal to rounded double sum except exact
+			// ties, which double sum may round down, they are left to
+			// scalar kernel
+			if (y.mul(1000).compare(VectorOperators.EQ, n).anyTrue()) {
+				super.greyscale(src, dst, offset + i, INT.length());
+			} else {
+				y.mul(0x010101).intoArray(dst, offset + i);
+			}
+		}
+		super.greyscale(src, dst, offset + i, length - i);
+	}
+
+	@Override
+	public void negative(int src[], int dst[], int offset, int length) {
+		int bound = INT.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += INT.length()) {
+			IntVector.fromArray(INT, src, offset + i).not().and(0xFFFFFF)
+					.intoArray(dst, offset + i);
+		}
+		super.negative(src, dst, offset + i, length - i);
+	}
+
+	@Override
+	public void map(int r[], int g[], int b[], int src[], int src_offset,
+			int dst[], int dst_offset, int length) {
+		// gathered lanes are indexed through array
+		int indices[] = new int[3 * INT.length()];
+		int l = INT.length();
+		int bound = INT.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += l) {
+			IntVector rgb = IntVector.fromArray(INT, src, src_offset + i);
+			rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+					.intoArray(indices, 0);
+			rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF)
+					.intoArray(indices, l);
+			rgb.and(0xFF).intoArray(indices, 2 * l);
+			IntVector.fromArray(INT, r, 0, indices, 0)
+					.or(IntVector.fromArray(INT, g, 0, indices, l))
+					.or(IntVector.fromArray(INT, b, 0, indices, 2 * l))
+					.intoArray(dst, dst_offset + i);
+		}
+		super.map(r, g, b, src, src_offset + i, dst, dst_offset + i, length
+				- i);
+	}
+
+	@Override
+	public void threshold(short src[], int dst[], int offset, int length,
+			int threshold, int above, int below) {
+		IntVector above_v = IntVector.broadcast(INT, above);
+		IntVector below_v = IntVector.broadcast(INT, below);
+		int bound = INT.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += INT.length()) {
+			IntVector m = (IntVector) ShortVector
+					.fromArray(SHORT, src, offset + i)
+					.convertShape(VectorOperators.S2I, INT, 0);
+			VectorMask<Integer> mask = m.compare(VectorOperators.GT,
+					threshold);
+			below_v.blend(above_v, mask).intoArray(dst, offset + i);
+		}
+		super.threshold(src, dst, offset + i, length - i, threshold, above,
+				below);
+	}
+
+	@Override
+	public void multiplyAdd(long acc[], long a[], long ka, long b[], long kb,
+			long c[], long kc, int from, int to) {
+		int bound = from + LONG.loopBound(Math.max(to - from, 0));
+		int w = from;
+		for (; w < bound; w += LONG.length()) {
+			LongVector.fromArray(LONG, a, w).mul(ka)
+					.add(LongVector.fromArray(LONG, b, w).mul(kb))
+					.add(LongVector.fromArray(LONG, c, w).mul(kc))
+					.add(LongVector.fromArray(LONG, acc, w)).intoArray(acc, w);
+		}
+		super.multiplyAdd(acc, a, ka, b, kb, c, kc, w, to);
+	}
+}
@@ -0,0 +1,21 @@
+package FIT_8201_Sviridov_Flt;
+
+/**
+ * Interface encapsulates operation over a horizontal band of image rows
+ * 
+ * @author alstein
+ */
+public interface BandOperation {
+
+	/**
+	 * Processes rows of the band. Implementation may read up to radius rows
+	 * above and below the band (halo rows) from the source, but must write
+	 * only rows of the band itself
+	 * 
+	 * @param first_row
+	 *            first row of the band (inclusive)
+	 * @param last_row
+	 *            last row of the band (exclusive)
+	 */
+	public void processBand(int first_row, int last_row);
+}
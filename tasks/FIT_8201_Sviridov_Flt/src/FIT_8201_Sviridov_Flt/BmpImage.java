@@ -1,15 +1,16 @@
 package FIT_8201_Sviridov_Flt;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
  * Class for reading/writing BMP files and BMP files representation
@@ -20,6 +21,19 @@ public class BmpImage extends BufferedImage {
 
 	public static final int BMP_HEADER_LENGTH = 14;
 	public static final int DIB_HEADER_LENGTH = 40;
+	// max number of bytes buffered at once, chunk stays in cache
+	private static final int CHUNK_SIZE = 1024 * 1024;
+
+	/**
+	 * Parsed BMP headers
+	 */
+	private static class Header {
+
+		private int _width;
+		private int _height;
+		// offset of pixel data
+		private long _offset;
+	}
 
 	/**
 	 * Constructor
@@ -34,7 +48,28 @@ public class BmpImage extends BufferedImage {
 	}
 
 	/**
-	 * Reads BMP file from file
+	 * Reads size of image stored in BMP file
+	 * 
+	 * @param file
+	 *            file to read from
+	 * @return image size
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	static public Dimension readBmpSize(File file)
+			throws FileNotFoundException, IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			Header header = readHeader(raf.getChannel());
+			return new Dimension(header._width, header._height);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads BMP file from file. File is read by chunks of rows with bulk
+	 * channel reads and scanlines are decoded straight to image raster
 	 * 
 	 * @param file
 	 *            file to read from
@@ -44,93 +79,64 @@ public class BmpImage extends BufferedImage {
 	 */
 	static public BmpImage readBmpImage(File file)
 			throws FileNotFoundException, IOException {
-		/*
-		 * BMP 'B''M' 2b|filesize 4b|-- 4b|offset 4b
-		 * 
-		 * DIB size of header 4b|width 4b|height 4b| num of color planes 2b|num
-		 * of bits per pixel 2b| compression 4b|image size 4b| hor res 4b| ver
-		 * res 4b|num of colors in color pallete 4b| num of imp. colors 4b
-		 */
-		FileInputStream fis = new FileInputStream(file);
-		BufferedInputStream bis = new BufferedInputStream(fis, 1024 * 8);
-		DataInputStream dis = new DataInputStream(bis);
-		LittleEndianDataInputStream ledis = new LittleEndianDataInputStream(dis);
-		IllegalArgumentException exc = new IllegalArgumentException();
-
-		BmpImage img = null;
-		int header_size, width, height, num_of_color_planes, bits_per_pixel, compression;
-
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
 		try {
-
-			if (ledis.readUnsignedByte() != 'B') {
-				throw exc;
-			}
-			if (ledis.readUnsignedByte() != 'M') {
-				throw exc;
-			}
-
-			ledis.readInt();
-			ledis.skipBytes(4);
-			ledis.readInt();
-
-			header_size = ledis.readInt();
-			if (header_size != DIB_HEADER_LENGTH) {
-				throw exc;
-			}
-			width = ledis.readInt();
-			height = ledis.readInt();
-
-			if (width < 3 || height < 3 || width > 5000 || height > 5000) {
-				throw exc;
+			FileChannel channel = raf.getChannel();
+			Header header = readHeader(channel);
+			if ((long) header._width * header._height > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException();
 			}
+			BmpImage img = new BmpImage(header._width, header._height);
+			int data[] = Pixels.getPixels(img);
+			decodeRows(channel, header, 0, header._height, data);
+			Pixels.setPixels(img, data);
+			return img;
+		} finally {
+			raf.close();
+		}
+	}
 
-			num_of_color_planes = ledis.readShort();
-			if (num_of_color_planes != 1) {
-				throw exc;
-			}
-			bits_per_pixel = ledis.readShort();
-			if (bits_per_pixel != 24) {
-				throw exc;
-			}
-			compression = ledis.readInt();
-			if (compression != 0) {
-				throw exc;
+	/**
+	 * Reads BMP file to tiled image. File is decoded by strips of tile rows,
+	 * so image does not have to fit in heap
+	 * 
+	 * @param file
+	 *            file to read from
+	 * @return read image
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	static public TiledImage readTiledImage(File file)
+			throws FileNotFoundException, IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		TiledImage img = null;
+		try {
+			FileChannel channel = raf.getChannel();
+			Header header = readHeader(channel);
+			int width = header._width, height = header._height;
+			img = new TiledImage(width, height);
+			int strip_rows = Math.max(1, Math.min(TiledImage.TILE_SIZE,
+					CHUNK_SIZE / (4 * width)));
+			int strip[] = new int[width * Math.min(strip_rows, height)];
+			for (int top = 0; top < height; top += strip_rows) {
+				int bottom = Math.min(height, top + strip_rows);
+				decodeRows(channel, header, top, bottom, strip);
+				img.setRGB(0, top, width, bottom - top, strip, 0, width);
 			}
-
-			ledis.readInt();
-			ledis.readInt();
-			ledis.readInt();
-			ledis.readInt();
-			ledis.readInt();
-
-			img = new BmpImage(width, height);
-
-			for (int i = height - 1; i >= 0; --i) {
-				int j;
-				for (j = 0; j < width; ++j) {
-					int B = ledis.readUnsignedByte();
-					int G = ledis.readUnsignedByte();
-					int R = ledis.readUnsignedByte();
-
-					img.setRGB(j, i, 256 * 256 * R + 256 * G + B);
-				}
-				j = j * 3;
-				if (j % 4 != 0) {
-					ledis.skipBytes(4 - (j + 4) % 4);
-				}
-
+			TiledImage result = img;
+			img = null;
+			return result;
+		} finally {
+			if (img != null) {
+				img.close();
 			}
-		} catch (IOException ex) {
-			dis.close();
-			throw ex;
+			raf.close();
 		}
-
-		dis.close();
-		return img;
 	}
 
 	/**
-	 * Writes BMP file to file
+	 * Writes BMP file to file. Scanlines are encoded by chunks of rows and
+	 * written with bulk channel writes
 	 * 
 	 * @param img
 	 *            image to write
@@ -141,90 +147,328 @@ public class BmpImage extends BufferedImage {
 	 */
 	static public void writeBmpImage(BufferedImage img, File file)
 			throws FileNotFoundException, IOException {
+		int width = img.getWidth();
+		int height = img.getHeight();
+
+		int data[] = Pixels.getPixels(img);
+
 		FileOutputStream fos = new FileOutputStream(file);
-		BufferedOutputStream bos = new BufferedOutputStream(fos, 8 * 1024);
-		DataOutputStream dos = new DataOutputStream(bos);
-		LittleEndianDataOutputStream ledos = new LittleEndianDataOutputStream(
-				dos);
+		try {
+			FileChannel channel = fos.getChannel();
+			writeHeader(channel, width, height);
+			encodeRows(channel, data, width, height);
+		} finally {
+			fos.close();
+		}
+	}
 
+	/**
+	 * Writes tiled image to BMP file strip by strip, starting from bottom
+	 * strip as BMP stores rows bottom-up
+	 * 
+	 * @param img
+	 *            image to write
+	 * @param file
+	 *            file to write
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	static public void writeBmpImage(TiledImage img, File file)
+			throws FileNotFoundException, IOException {
 		int width = img.getWidth();
 		int height = img.getHeight();
+		int strip_rows = Math.max(1, Math.min(TiledImage.TILE_SIZE,
+				CHUNK_SIZE / (4 * width)));
+		int strip[] = new int[width * Math.min(strip_rows, height)];
 
-		int data[] = img.getRGB(0, 0, width, height, null, 0, width);
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			FileChannel channel = fos.getChannel();
+			writeHeader(channel, width, height);
+			for (int bottom = height; bottom > 0; bottom -= strip_rows) {
+				int top = Math.max(0, bottom - strip_rows);
+				img.getRGB(0, top, width, bottom - top, strip, 0, width);
+				encodeRows(channel, strip, width, bottom - top);
+			}
+		} finally {
+			fos.close();
+		}
+	}
 
-		byte pad[] = new byte[4 - (3 * width + 4) % 4];
-		int file_size = height * width * 3
-				+ (width % 4 == 0 ? 0 : height * pad.length)
-				+ BMP_HEADER_LENGTH + DIB_HEADER_LENGTH;
+	/**
+	 * Reads and checks BMP headers
+	 * 
+	 * @param channel
+	 *            file channel
+	 * @return parsed headers
+	 * @throws IOException
+	 */
+	private static Header readHeader(FileChannel channel) throws IOException {
+		/*
+		 * BMP 'B''M' 2b|filesize 4b|-- 4b|offset 4b
+		 * 
+		 * DIB size of header 4b|width 4b|height 4b| num of color planes 2b|num
+		 * of bits per pixel 2b| compression 4b|image size 4b| hor res 4b| ver
+		 * res 4b|num of colors in color pallete 4b| num of imp. colors 4b
+		 */
+		IllegalArgumentException exc = new IllegalArgumentException();
+		Header h = new Header();
+		int header_size, num_of_color_planes, bits_per_pixel, compression;
 
-		try {
-			ledos.writeByte('B');
-			ledos.writeByte('M');
+		long file_length = channel.size();
+		if (file_length < BMP_HEADER_LENGTH + DIB_HEADER_LENGTH) {
+			throw new EOFException();
+		}
+		ByteBuffer header = ByteBuffer.allocate(BMP_HEADER_LENGTH
+				+ DIB_HEADER_LENGTH);
+		readFully(channel, header, 0);
+		header.flip();
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (header.get() != 'B') {
+			throw exc;
+		}
+		if (header.get() != 'M') {
+			throw exc;
+		}
 
-			// file_size
-			ledos.writeInt(file_size);
+		header.getInt();
+		header.getInt();
+		h._offset = header.getInt() & 0xFFFFFFFFL;
 
-			// skipBytes 4
-			ledos.writeInt(0);
+		header_size = header.getInt();
+		if (header_size != DIB_HEADER_LENGTH) {
+			throw exc;
+		}
+		h._width = header.getInt();
+		h._height = header.getInt();
 
-			// offset
-			ledos.writeInt(BMP_HEADER_LENGTH + DIB_HEADER_LENGTH);
+		if (h._width < 3 || h._height < 3) {
+			throw exc;
+		}
 
-			// header_size
-			ledos.writeInt(DIB_HEADER_LENGTH);
+		num_of_color_planes = header.getShort();
+		if (num_of_color_planes != 1) {
+			throw exc;
+		}
+		bits_per_pixel = header.getShort();
+		if (bits_per_pixel != 24) {
+			throw exc;
+		}
+		compression = header.getInt();
+		if (compression != 0) {
+			throw exc;
+		}
+		if (h._offset < BMP_HEADER_LENGTH + DIB_HEADER_LENGTH) {
+			throw exc;
+		}
 
-			// width
-			ledos.writeInt(width);
+		if (h._offset + (long) getRowSize(h._width) * h._height > file_length) {
+			throw new EOFException();
+		}
+		return h;
+	}
 
-			// height
-			ledos.writeInt(height);
+	/**
+	 * Decodes image rows <code>[top, bottom)</code> to packed pixels. Rows
+	 * are stored bottom-up, so they form one contiguous region of file which
+	 * is read by chunks into heap buffer. File is not mapped to memory, as
+	 * mapping would keep it locked on some systems until it is collected
+	 * 
+	 * @param channel
+	 *            file channel
+	 * @param header
+	 *            parsed headers
+	 * @param top
+	 *            first row (inclusive)
+	 * @param bottom
+	 *            last row (exclusive)
+	 * @param dst
+	 *            destination pixels, row <code>top</code> goes first
+	 * @throws IOException
+	 */
+	private static void decodeRows(FileChannel channel, Header header,
+			int top, int bottom, int dst[]) throws IOException {
+		int width = header._width;
+		int row_size = getRowSize(width);
+		int chunk_rows = Math.max(1, CHUNK_SIZE / row_size);
+
+		// file row of image row y is (height - 1 - y)
+		int first_file_row = header._height - bottom;
+		int rows = bottom - top;
+		byte chunk[] = new byte[Math.min(chunk_rows, rows) * row_size];
+		ByteBuffer buffer = ByteBuffer.wrap(chunk);
+		for (int first = 0; first < rows; first += chunk_rows) {
+			int count = Math.min(chunk_rows, rows - first);
+			buffer.clear();
+			buffer.limit(count * row_size);
+			readFully(channel, buffer, header._offset
+					+ (long) (first_file_row + first) * row_size);
+			for (int r = 0; r < count; ++r) {
+				int p = (rows - 1 - first - r) * width;
+				for (int j = 0, k = r * row_size; j < width; ++j, k += 3) {
+					dst[p + j] = ((chunk[k + 2] & 0xFF) << 16)
+							| ((chunk[k + 1] & 0xFF) << 8) | (chunk[k] & 0xFF);
+				}
+			}
+		}
+	}
 
-			// num_of_color_planes
-			ledos.writeShort(1);
+	/**
+	 * Writes BMP headers
+	 * 
+	 * @param channel
+	 *            file channel
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @throws IOException
+	 */
+	private static void writeHeader(FileChannel channel, int width, int height)
+			throws IOException {
+		long file_size = (long) height * getRowSize(width) + BMP_HEADER_LENGTH
+				+ DIB_HEADER_LENGTH;
+		if (file_size > 0xFFFFFFFFL) {
+			throw new IllegalArgumentException("image is too large for BMP");
+		}
 
-			// bits_per_pixel
-			ledos.writeShort(24);
+		ByteBuffer header = ByteBuffer.allocate(BMP_HEADER_LENGTH
+				+ DIB_HEADER_LENGTH);
+		header.order(ByteOrder.LITTLE_ENDIAN);
 
-			// compression
-			ledos.writeInt(0);
+		header.put((byte) 'B');
+		header.put((byte) 'M');
 
-			// image_size
-			ledos.writeInt(file_size - BMP_HEADER_LENGTH - DIB_HEADER_LENGTH);
+		// file_size
+		header.putInt((int) file_size);
 
-			// hor_res
-			ledos.writeInt(96);
-			// ver_res
-			ledos.writeInt(96);
+		// skipBytes 4
+		header.putInt(0);
 
-			// num_of_colors
-			ledos.writeInt(0);
-			// num_of_imp_color
-			ledos.writeInt(0);
+		// offset
+		header.putInt(BMP_HEADER_LENGTH + DIB_HEADER_LENGTH);
 
-			byte bgr[] = new byte[3];
-			for (int i = height - 1; i >= 0; --i) {
-				for (int j = 0; j < width; ++j) {
-					int rgb = data[i * width + j];
-					int RGB[] = { (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF,
-							rgb & 0xFF };
+		// header_size
+		header.putInt(DIB_HEADER_LENGTH);
 
-					bgr[0] = (byte) RGB[2];
-					bgr[1] = (byte) RGB[1];
-					bgr[2] = (byte) RGB[0];
+		// width
+		header.putInt(width);
 
-					ledos.write(bgr);
-				}
+		// height
+		header.putInt(height);
+
+		// num_of_color_planes
+		header.putShort((short) 1);
+
+		// bits_per_pixel
+		header.putShort((short) 24);
+
+		// compression
+		header.putInt(0);
+
+		// image_size
+		header.putInt((int) (file_size - BMP_HEADER_LENGTH - DIB_HEADER_LENGTH));
+
+		// hor_res
+		header.putInt(96);
+		// ver_res
+		header.putInt(96);
+
+		// num_of_colors
+		header.putInt(0);
+		// num_of_imp_color
+		header.putInt(0);
 
-				if (width % 4 != 0) {
-					ledos.write(pad);
+		header.flip();
+		writeFully(channel, header);
+	}
+
+	/**
+	 * Encodes rows of packed pixels and writes them bottom-up by chunks,
+	 * padding bytes stay zero
+	 * 
+	 * @param channel
+	 *            file channel
+	 * @param data
+	 *            packed pixels, top row goes first
+	 * @param width
+	 *            image width
+	 * @param rows
+	 *            number of rows
+	 * @throws IOException
+	 */
+	private static void encodeRows(FileChannel channel, int data[], int width,
+			int rows) throws IOException {
+		int row_size = getRowSize(width);
+		int chunk_rows = Math.max(1, CHUNK_SIZE / row_size);
+		byte chunk[] = new byte[Math.min(chunk_rows, rows) * row_size];
+		for (int first = 0; first < rows; first += chunk_rows) {
+			int count = Math.min(chunk_rows, rows - first);
+			for (int r = 0; r < count; ++r) {
+				int p = (rows - 1 - first - r) * width;
+				for (int j = 0, k = r * row_size; j < width; ++j, k += 3) {
+					int rgb = data[p + j];
+					chunk[k] = (byte) rgb;
+					chunk[k + 1] = (byte) (rgb >> 8);
+					chunk[k + 2] = (byte) (rgb >> 16);
 				}
+			}
+			writeFully(channel, ByteBuffer.wrap(chunk, 0, count * row_size));
+		}
+	}
 
+	/**
+	 * Returns size of BMP scanline padded to 4 bytes
+	 * 
+	 * @param width
+	 *            image width
+	 * @return scanline size in bytes
+	 */
+	private static int getRowSize(int width) {
+		long row_size = (3L * width + 3) & ~3L;
+		if (row_size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("image is too wide");
+		}
+		return (int) row_size;
+	}
+
+	/**
+	 * Reads bytes from channel until buffer is full
+	 * 
+	 * @param channel
+	 *            channel
+	 * @param buffer
+	 *            buffer
+	 * @param position
+	 *            file position of first byte
+	 * @throws IOException
+	 *             if end of file is reached
+	 */
+	static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException();
 			}
-		} catch (IOException ex) {
-			dos.close();
-			throw ex;
+			position += read;
 		}
+	}
 
-		dos.close();
+	/**
+	 * Writes all remaining bytes of buffer to channel
+	 * 
+	 * @param channel
+	 *            channel
+	 * @param buffer
+	 *            buffer
+	 * @throws IOException
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
 	}
 }
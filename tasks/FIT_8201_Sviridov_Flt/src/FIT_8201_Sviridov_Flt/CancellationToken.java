@@ -0,0 +1,42 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Class encapsulates flag telling running job to stop. Job checks token
+ * between units of work and stops by throwing {@link CancellationException}
+ * 
+ * @author alstein
+ */
+public class CancellationToken {
+
+	private volatile boolean _cancelled = false;
+
+	/**
+	 * Requests job to stop
+	 */
+	public void cancel() {
+		_cancelled = true;
+	}
+
+	/**
+	 * Returns true if job is requested to stop
+	 * 
+	 * @return true if token is cancelled
+	 */
+	public boolean isCancelled() {
+		return _cancelled;
+	}
+
+	/**
+	 * Throws exception if job is requested to stop
+	 * 
+	 * @throws CancellationException
+	 *             if token is cancelled
+	 */
+	public void check() {
+		if (_cancelled) {
+			throw new CancellationException("job is cancelled");
+		}
+	}
+}
@@ -0,0 +1,824 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates convolution kernel prepared for fast application.
+ * Separable kernels are applied as two 1D passes over unpacked color planes.
+ * Kernels which become integer after multiplying by small denominator (e.g.
+ * sharpen, emboss, blur) are applied in integer arithmetic to all three
+ * channels at once, packed into 21-bit lanes of long: source rows are summed
+ * with weights of every kernel column in one pass, see
+ * {@link PixelKernels#multiplyAdd}, and column sums are added shifted. Other
+ * kernels are applied with fixed-point arithmetic over unpacked color planes.
+ * Result matches exact convolution within 1 per channel
+ * 
+ * @author alstein
+ */
+public class Convolution {
+
+	// max number of fractional bits of fixed-point weights
+	public static final int FIXED_POINT_SHIFT = 16;
+	// max denominator making kernel integer
+	public static final int MAX_DENOMINATOR = 1024;
+	// tolerance for integer and separability checks
+	private static final double EPSILON = 1e-9;
+	// width of channel lane in packed accumulator
+	private static final int LANE_BITS = 21;
+	private static final long LANE_MASK = (1L << LANE_BITS) - 1;
+
+	// half height of kernel
+	private final int _m_h;
+	// half width of kernel
+	private final int _m_w;
+	// number of fractional bits of fixed-point weights
+	private final int _shift;
+	// row offsets of non-zero taps
+	private final int _tap_rows[];
+	// column offsets of non-zero taps
+	private final int _tap_cols[];
+	// fixed-point weights of non-zero taps (scaled by 2^_shift)
+	private final int _tap_weights[];
+	// smallest number making all kernel weights integer, 0 if there is none
+	private final int _denominator;
+	// true if kernel rows are symmetric about central row
+	private final boolean _symmetric;
+	// true if kernel columns are symmetric about central column
+	private final boolean _mirrored;
+	// column offsets of integer column sums, distances from central column
+	// for mirrored kernel
+	private final int _sum_cols[];
+	// weights of source rows (folded if kernel is symmetric) multiplied by
+	// denominator for every column sum, padded with zeros to multiple of 3
+	private final long _sum_weights[][];
+	// lane bias keeping packed accumulator non-negative
+	private final int _bias;
+	// max value of biased accumulator lane
+	private final int _lane_max;
+	// vertical factor of separable kernel, null if kernel is not separable
+	private float _col_kernel[];
+	// horizontal factor of separable kernel, null if kernel is not separable
+	private float _row_kernel[];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param m
+	 *            convolution matrix with odd number of rows and columns
+	 */
+	public Convolution(double m[][]) {
+		int rows = m.length, cols = m[0].length;
+		_m_h = rows / 2;
+		_m_w = cols / 2;
+
+		double abs_sum = 0;
+		int count = 0;
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < cols; ++j) {
+				if (m[i][j] != 0) {
+					++count;
+				}
+				abs_sum += Math.abs(m[i][j]);
+			}
+		}
+
+		// keep fixed-point accumulator of 8-bit samples within int range
+		int shift = FIXED_POINT_SHIFT;
+		while (shift > 0 && abs_sum * 255 * (1 << shift) >= 1 << 30) {
+			--shift;
+		}
+		_shift = shift;
+
+		_tap_rows = new int[count];
+		_tap_cols = new int[count];
+		_tap_weights = new int[count];
+		int t = 0;
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < cols; ++j) {
+				if (m[i][j] != 0) {
+					_tap_rows[t] = i - _m_h;
+					_tap_cols[t] = j - _m_w;
+					_tap_weights[t] = (int) Math.rint(m[i][j] * (1 << shift));
+					++t;
+				}
+			}
+		}
+
+		// integer weights summed by kernel columns
+		int denominator = findDenominator(m);
+		if (abs_sum * denominator * 255 >= LANE_MASK) {
+			denominator = 0;
+		}
+		_denominator = denominator;
+		int negative_sum = 0, positive_sum = 0;
+		boolean symmetric = true, mirrored = true;
+		long weights[][] = new long[rows][cols];
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < cols; ++j) {
+				long weight = (long) Math.rint(m[i][j] * denominator);
+				weights[i][j] = weight;
+				if (weight < 0) {
+					negative_sum -= weight;
+				} else {
+					positive_sum += weight;
+				}
+				if (m[i][j] != m[rows - 1 - i][j]) {
+					symmetric = false;
+				}
+				if (m[i][j] != m[i][cols - 1 - j]) {
+					mirrored = false;
+				}
+			}
+		}
+		_symmetric = symmetric;
+		_mirrored = mirrored;
+		_bias = 255 * negative_sum;
+		_lane_max = 255 * (negative_sum + positive_sum);
+
+		// rows below central one of symmetric kernel are folded into upper
+		int sources = symmetric ? _m_h + 1 : rows;
+		int first_col = mirrored ? _m_w : 0;
+		int sums = 0;
+		for (int j = first_col; j < cols; ++j) {
+			if (!isZeroColumn(weights, j, sources)) {
+				++sums;
+			}
+		}
+		_sum_cols = new int[sums];
+		_sum_weights = new long[sums][(sources + 2) / 3 * 3];
+		int c = 0;
+		for (int j = first_col; j < cols; ++j) {
+			if (!isZeroColumn(weights, j, sources)) {
+				_sum_cols[c] = j - _m_w;
+				for (int i = 0; i < sources; ++i) {
+					_sum_weights[c][i] = weights[i][j];
+				}
+				++c;
+			}
+		}
+
+		if (rows + cols < count) {
+			findSeparableFactors(m);
+		}
+	}
+
+	/**
+	 * Returns true if column of weights is zero in given number of first rows
+	 */
+	private static boolean isZeroColumn(long weights[][], int j, int rows) {
+		for (int i = 0; i < rows; ++i) {
+			if (weights[i][j] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds smallest number making all weights of matrix integer
+	 * 
+	 * @param m
+	 *            convolution matrix
+	 * @return denominator or 0 if it is greater than MAX_DENOMINATOR
+	 */
+	private static int findDenominator(double m[][]) {
+		for (int d = 1; d <= MAX_DENOMINATOR; ++d) {
+			boolean integer = true;
+			for (int i = 0; i < m.length && integer; ++i) {
+				for (int j = 0; j < m[i].length && integer; ++j) {
+					double v = m[i][j] * d;
+					integer = Math.abs(v - Math.rint(v)) <= EPSILON * d;
+				}
+			}
+			if (integer) {
+				return d;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks if matrix is outer product of column and row and saves factors if
+	 * so
+	 * 
+	 * @param m
+	 *            convolution matrix
+	 */
+	private void findSeparableFactors(double m[][]) {
+		int rows = m.length, cols = m[0].length;
+		int p_i = 0, p_j = 0;
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < cols; ++j) {
+				if (Math.abs(m[i][j]) > Math.abs(m[p_i][p_j])) {
+					p_i = i;
+					p_j = j;
+				}
+			}
+		}
+		double pivot = m[p_i][p_j];
+		if (pivot == 0) {
+			return;
+		}
+		float col[] = new float[rows];
+		float row[] = new float[cols];
+		for (int i = 0; i < rows; ++i) {
+			col[i] = (float) m[i][p_j];
+		}
+		for (int j = 0; j < cols; ++j) {
+			row[j] = (float) (m[p_i][j] / pivot);
+		}
+		for (int i = 0; i < rows; ++i) {
+			for (int j = 0; j < cols; ++j) {
+				if (Math.abs(m[i][p_j] * m[p_i][j] / pivot - m[i][j]) > EPSILON) {
+					return;
+				}
+			}
+		}
+		_col_kernel = col;
+		_row_kernel = row;
+	}
+
+	/**
+	 * Returns kernel radius (half height)
+	 * 
+	 * @return kernel radius
+	 */
+	public int getRadius() {
+		return _m_h;
+	}
+
+	/**
+	 * Returns true if kernel is applied as two 1D passes
+	 * 
+	 * @return true if kernel is separable
+	 */
+	public boolean isSeparable() {
+		return _col_kernel != null;
+	}
+
+	/**
+	 * Returns true if kernel is applied in exact integer arithmetic
+	 * 
+	 * @return true if kernel weights are integer up to common denominator
+	 */
+	public boolean isInteger() {
+		return _denominator != 0;
+	}
+
+	/**
+	 * Unpacks packed RGB pixels into color planes
+	 * 
+	 * @param data
+	 *            packed pixels
+	 * @param width
+	 *            number of columns
+	 * @param height
+	 *            number of rows
+	 * @return red, green and blue planes
+	 */
+	public static int[][] unpackPlanes(final int data[], final int width,
+			int height) {
+		final int planes[][] = new int[3][data.length];
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int r[] = planes[0], g[] = planes[1], b[] = planes[2];
+				for (int i = first_row * width; i < last_row * width; ++i) {
+					int rgb = data[i];
+					r[i] = (rgb >> 16) & 0xFF;
+					g[i] = (rgb >> 8) & 0xFF;
+					b[i] = rgb & 0xFF;
+				}
+			}
+		});
+		return planes;
+	}
+
+	/**
+	 * Applies kernel to image. Border pixels not covered by kernel are copied
+	 * from original image
+	 * 
+	 * @param o
+	 *            original image
+	 * @param r_s
+	 *            number to be added to R component
+	 * @param g_s
+	 *            number to be added to G component
+	 * @param b_s
+	 *            number to be added to B component
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o, double r_s, double g_s,
+			double b_s) {
+		int width = o.getWidth(), height = o.getHeight();
+		int data[] = Pixels.getPixels(o);
+
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		int n_data[] = Pixels.getTargetPixels(n);
+
+		apply(data, n_data, width, height, r_s, g_s, b_s);
+
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Applies kernel to packed pixels. Border pixels not covered by kernel are
+	 * copied from source
+	 * 
+	 * @param data
+	 *            source pixels
+	 * @param n_data
+	 *            destination pixels
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param r_s
+	 *            number to be added to R component
+	 * @param g_s
+	 *            number to be added to G component
+	 * @param b_s
+	 *            number to be added to B component
+	 */
+	public void apply(int data[], int n_data[], int width, int height,
+			double r_s, double g_s, double b_s) {
+		if (isSeparable()) {
+			applySeparable(unpackPlanes(data, width, height), n_data, width,
+					height, r_s, g_s, b_s);
+		} else if (isInteger()) {
+			applyPacked(data, n_data, width, height, r_s, g_s, b_s);
+		} else {
+			applyFixedPoint(unpackPlanes(data, width, height), n_data, width,
+					height, r_s, g_s, b_s);
+		}
+		copyBorders(data, n_data, width, height);
+	}
+
+	/**
+	 * Returns filter applying kernel to window of rows. Integer kernels are
+	 * applied exactly as in {@link #apply(int[], int[], int, int, double,
+	 * double, double)}, other kernels are applied with fixed-point arithmetic
+	 * 
+	 * @param r_s
+	 *            number to be added to R component
+	 * @param g_s
+	 *            number to be added to G component
+	 * @param b_s
+	 *            number to be added to B component
+	 * @return row filter
+	 */
+	public RowFilter getRowFilter(double r_s, double g_s, double b_s) {
+		if (isInteger()) {
+			return new PackedRowFilter(r_s, g_s, b_s);
+		}
+		return new FixedPointRowFilter(r_s, g_s, b_s);
+	}
+
+	/**
+	 * Row filter applying integer kernel to channels packed into lanes of long
+	 */
+	private class PackedRowFilter implements RowFilter {
+
+		private final int _r_table[];
+		private final int _g_table[];
+		private final int _b_table[];
+		private final long _initial;
+		// spread source rows
+		private long _spread[][] = new long[0][];
+		private PackedAccumulator _accumulator;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param r_s
+		 *            number to be added to R component
+		 * @param g_s
+		 *            number to be added to G component
+		 * @param b_s
+		 *            number to be added to B component
+		 */
+		public PackedRowFilter(double r_s, double g_s, double b_s) {
+			_r_table = makeLaneTable(r_s);
+			_g_table = makeLaneTable(g_s);
+			_b_table = makeLaneTable(b_s);
+			_initial = _bias | ((long) _bias << LANE_BITS)
+					| ((long) _bias << (2 * LANE_BITS));
+		}
+
+		@Override
+		public int getRadius() {
+			return _m_h;
+		}
+
+		@Override
+		public void filterRow(int rows[][], int dst[], int width) {
+			System.arraycopy(rows[_m_h], 0, dst, 0, width);
+			int from = _m_w, to = width - _m_w;
+			if (from >= to) {
+				return;
+			}
+			if (_accumulator == null || _accumulator._width != width) {
+				_spread = new long[2 * _m_h + 1][width];
+				_accumulator = new PackedAccumulator(width);
+			}
+			for (int i = 0; i < _spread.length; ++i) {
+				spreadRow(rows[i], 0, _spread[i]);
+			}
+			long acc[] = _accumulator.accumulate(_spread, _initial);
+			for (int w = from; w < to; ++w) {
+				long a = acc[w];
+				dst[w] = (_r_table[(int) (a >>> (2 * LANE_BITS))] << 16)
+						| (_g_table[(int) ((a >>> LANE_BITS) & LANE_MASK)] << 8)
+						| _b_table[(int) (a & LANE_MASK)];
+			}
+		}
+	}
+
+	/**
+	 * Scratch rows for applying integer kernel to one row of pixels spread to
+	 * lanes of long. Rows of symmetric kernel are folded, then source rows are
+	 * summed with weights of every kernel column and column sums are added
+	 * shifted, so every source element is multiplied once per distinct
+	 * column instead of once per tap
+	 */
+	private class PackedAccumulator {
+
+		private final int _width;
+		// source rows of column sums: folded rows and zero padding rows
+		private final long _sources[][];
+		private final long _sum[];
+		private final long _acc[];
+		private final PixelKernels _kernels = PixelKernels.getInstance();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param width
+		 *            row width
+		 */
+		public PackedAccumulator(int width) {
+			_width = width;
+			int used = _symmetric ? _m_h + 1 : 2 * _m_h + 1;
+			_sources = new long[(used + 2) / 3 * 3][];
+			for (int i = 0; i < _sources.length; ++i) {
+				if (i >= used || (_symmetric && i < _m_h)) {
+					_sources[i] = new long[width];
+				}
+			}
+			_sum = new long[width];
+			_acc = new long[width];
+		}
+
+		/**
+		 * Computes biased accumulators of pixels covered by kernel
+		 * 
+		 * @param rows
+		 *            spread source rows under kernel from top to bottom
+		 * @param initial
+		 *            bias of accumulator lanes
+		 * @return accumulators, valid from half width of kernel to row width
+		 *         minus half width of kernel
+		 */
+		public long[] accumulate(long rows[][], long initial) {
+			int width = _width, from = _m_w, to = width - _m_w;
+			long sources[][] = _sources;
+			if (_symmetric) {
+				int k_rows = 2 * _m_h + 1;
+				for (int i = 0; i < _m_h; ++i) {
+					long fold[] = sources[i], top[] = rows[i], bottom[] = rows[k_rows
+							- 1 - i];
+					for (int w = 0; w < width; ++w) {
+						fold[w] = top[w] + bottom[w];
+					}
+				}
+				sources[_m_h] = rows[_m_h];
+			} else {
+				System.arraycopy(rows, 0, sources, 0, rows.length);
+			}
+
+			long acc[] = _acc, sum[] = _sum;
+			for (int w = from; w < to; ++w) {
+				acc[w] = initial;
+			}
+			for (int c = 0; c < _sum_cols.length; ++c) {
+				int shift = _sum_cols[c];
+				long weights[] = _sum_weights[c];
+				// column sum is needed under the whole kernel window
+				long dst[] = shift == 0 ? acc : sum;
+				int lo = shift == 0 ? from : from - _m_w;
+				int hi = shift == 0 ? to : to + _m_w;
+				if (shift != 0) {
+					for (int w = lo; w < hi; ++w) {
+						sum[w] = 0;
+					}
+				}
+				for (int i = 0; i < weights.length; i += 3) {
+					_kernels.multiplyAdd(dst, sources[i], weights[i],
+							sources[i + 1], weights[i + 1], sources[i + 2],
+							weights[i + 2], lo, hi);
+				}
+				if (shift == 0) {
+					continue;
+				}
+				if (_mirrored) {
+					for (int w = from; w < to; ++w) {
+						acc[w] += sum[w - shift] + sum[w + shift];
+					}
+				} else {
+					for (int w = from; w < to; ++w) {
+						acc[w] += sum[w + shift];
+					}
+				}
+			}
+			return acc;
+		}
+	}
+
+	/**
+	 * Row filter applying kernel with fixed-point arithmetic over non-zero taps
+	 */
+	private class FixedPointRowFilter implements RowFilter {
+
+		private final int _rs;
+		private final int _gs;
+		private final int _bs;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param r_s
+		 *            number to be added to R component
+		 * @param g_s
+		 *            number to be added to G component
+		 * @param b_s
+		 *            number to be added to B component
+		 */
+		public FixedPointRowFilter(double r_s, double g_s, double b_s) {
+			_rs = toFixedPoint(r_s);
+			_gs = toFixedPoint(g_s);
+			_bs = toFixedPoint(b_s);
+		}
+
+		@Override
+		public int getRadius() {
+			return _m_h;
+		}
+
+		@Override
+		public void filterRow(int rows[][], int dst[], int width) {
+			System.arraycopy(rows[_m_h], 0, dst, 0, width);
+			int taps = _tap_weights.length;
+			for (int w = _m_w; w < width - _m_w; ++w) {
+				int R = _rs, G = _gs, B = _bs;
+				for (int t = 0; t < taps; ++t) {
+					int rgb = rows[_tap_rows[t] + _m_h][w + _tap_cols[t]];
+					int k = _tap_weights[t];
+					R += k * ((rgb >> 16) & 0xFF);
+					G += k * ((rgb >> 8) & 0xFF);
+					B += k * (rgb & 0xFF);
+				}
+				dst[w] = (clamp(R >> _shift) << 16) | (clamp(G >> _shift) << 8)
+						| clamp(B >> _shift);
+			}
+		}
+	}
+
+	/**
+	 * Converts number added to component to fixed-point, rounding half is
+	 * included
+	 * 
+	 * @param s
+	 *            number to be added to component
+	 * @return fixed-point addend
+	 */
+	private int toFixedPoint(double s) {
+		int half = _shift > 0 ? 1 << (_shift - 1) : 0;
+		return (int) Math.floor(s * (1 << _shift) + 0.5) + half;
+	}
+
+	/**
+	 * Makes table mapping biased accumulator lane to resulting channel value
+	 * 
+	 * @param s
+	 *            number to be added to component
+	 * @return lookup table
+	 */
+	private int[] makeLaneTable(double s) {
+		int table[] = new int[_lane_max + 1];
+		for (int v = 0; v <= _lane_max; ++v) {
+			table[v] = round((double) (v - _bias) / _denominator + s);
+		}
+		return table;
+	}
+
+	/**
+	 * Spreads channels of packed pixels to lanes of long
+	 * 
+	 * @param data
+	 *            packed pixels
+	 * @param offset
+	 *            offset of first pixel
+	 * @param dst
+	 *            spread pixels
+	 */
+	private static void spreadRow(int data[], int offset, long dst[]) {
+		for (int w = 0; w < dst.length; ++w) {
+			long rgb = data[offset + w];
+			dst[w] = ((rgb & 0xFF0000L) << (2 * LANE_BITS - 16))
+					| ((rgb & 0xFF00L) << (LANE_BITS - 8)) | (rgb & 0xFFL);
+		}
+	}
+
+	/**
+	 * Applies integer 2D kernel to all channels at once. Channels are spread to
+	 * lanes of long, accumulator lanes start from bias so that negative weights
+	 * never borrow from neighbour lane. Every band keeps ring of spread rows,
+	 * see {@link PackedAccumulator}
+	 */
+	private void applyPacked(final int data[], final int n_data[],
+			final int width, final int height, double r_s, double g_s,
+			double b_s) {
+		final int r_table[] = makeLaneTable(r_s);
+		final int g_table[] = makeLaneTable(g_s);
+		final int b_table[] = makeLaneTable(b_s);
+		final int bias = _bias;
+		final long initial = bias | ((long) bias << LANE_BITS)
+				| ((long) bias << (2 * LANE_BITS));
+
+		TileScheduler.execute(height, _m_h, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int first = Math.max(first_row, _m_h);
+				int last = Math.min(last_row, height - _m_h);
+				if (first >= last) {
+					return;
+				}
+				int k_rows = 2 * _m_h + 1;
+				int from = _m_w, to = width - _m_w;
+				long ring[][] = new long[k_rows][width];
+				long window[][] = new long[k_rows][];
+				PackedAccumulator accumulator = new PackedAccumulator(width);
+				for (int y = first - _m_h; y < first + _m_h; ++y) {
+					spreadRow(data, y * width, ring[y % k_rows]);
+				}
+				for (int h = first; h < last; ++h) {
+					spreadRow(data, (h + _m_h) * width, ring[(h + _m_h)
+							% k_rows]);
+					for (int i = 0; i < k_rows; ++i) {
+						window[i] = ring[(h - _m_h + i) % k_rows];
+					}
+					long acc[] = accumulator.accumulate(window, initial);
+					int p = h * width;
+					for (int w = from; w < to; ++w) {
+						long a = acc[w];
+						n_data[p + w] = (r_table[(int) (a >>> (2 * LANE_BITS))] << 16)
+								| (g_table[(int) ((a >>> LANE_BITS) & LANE_MASK)] << 8)
+								| b_table[(int) (a & LANE_MASK)];
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Applies 2D kernel using fixed-point arithmetic over non-zero taps
+	 */
+	private void applyFixedPoint(final int planes[][], final int n_data[],
+			final int width, final int height, double r_s, double g_s,
+			double b_s) {
+		final int taps = _tap_weights.length;
+		final int offsets[] = new int[taps];
+		for (int t = 0; t < taps; ++t) {
+			offsets[t] = _tap_rows[t] * width + _tap_cols[t];
+		}
+		final int weights[] = _tap_weights;
+		final int shift = _shift;
+		final int rs = toFixedPoint(r_s);
+		final int gs = toFixedPoint(g_s);
+		final int bs = toFixedPoint(b_s);
+
+		TileScheduler.execute(height, _m_h, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int r[] = planes[0], g[] = planes[1], b[] = planes[2];
+				for (int h = Math.max(first_row, _m_h); h < Math.min(last_row,
+						height - _m_h); ++h) {
+					for (int w = _m_w; w < width - _m_w; ++w) {
+						int p = h * width + w;
+						int R = rs, G = gs, B = bs;
+						for (int t = 0; t < taps; ++t) {
+							int q = p + offsets[t];
+							int k = weights[t];
+							R += k * r[q];
+							G += k * g[q];
+							B += k * b[q];
+						}
+						n_data[p] = (clamp(R >> shift) << 16)
+								| (clamp(G >> shift) << 8) | clamp(B >> shift);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Applies separable kernel as horizontal pass over band with halo rows
+	 * followed by vertical pass
+	 */
+	private void applySeparable(final int planes[][], final int n_data[],
+			final int width, final int height, final double r_s,
+			final double g_s, final double b_s) {
+		final float col_k[] = _col_kernel;
+		final float row_k[] = _row_kernel;
+
+		TileScheduler.execute(height, _m_h, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int from = Math.max(first_row, _m_h);
+				int to = Math.min(last_row, height - _m_h);
+				if (from >= to) {
+					return;
+				}
+				// horizontal pass over band rows and halo rows
+				int halo_from = from - _m_h;
+				int halo_rows = to - from + 2 * _m_h;
+				float tmp[][] = new float[3][halo_rows * width];
+				for (int c = 0; c < 3; ++c) {
+					int src[] = planes[c];
+					float dst[] = tmp[c];
+					for (int i = 0; i < halo_rows; ++i) {
+						int row = (halo_from + i) * width;
+						for (int w = _m_w; w < width - _m_w; ++w) {
+							float s = 0;
+							for (int j = 0; j < row_k.length; ++j) {
+								s += row_k[j] * src[row + w + j - _m_w];
+							}
+							dst[i * width + w] = s;
+						}
+					}
+				}
+				// vertical pass
+				float R[] = tmp[0], G[] = tmp[1], B[] = tmp[2];
+				for (int h = from; h < to; ++h) {
+					int base = (h - halo_from - _m_h) * width;
+					for (int w = _m_w; w < width - _m_w; ++w) {
+						double r = 0, g = 0, b = 0;
+						for (int i = 0; i < col_k.length; ++i) {
+							int q = base + i * width + w;
+							r += col_k[i] * R[q];
+							g += col_k[i] * G[q];
+							b += col_k[i] * B[q];
+						}
+						n_data[h * width + w] = (round(r + r_s) << 16)
+								| (round(g + g_s) << 8) | round(b + b_s);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Copies pixels not covered by kernel from source to destination
+	 */
+	private void copyBorders(int data[], int n_data[], int width, int height) {
+		for (int h = 0; h < height; ++h) {
+			if (h < _m_h || h >= height - _m_h) {
+				System.arraycopy(data, h * width, n_data, h * width, width);
+				continue;
+			}
+			for (int w = 0; w < Math.min(_m_w, width); ++w) {
+				n_data[h * width + w] = data[h * width + w];
+			}
+			for (int w = Math.max(width - _m_w, 0); w < width; ++w) {
+				n_data[h * width + w] = data[h * width + w];
+			}
+		}
+	}
+
+	/**
+	 * Clamps value to [0, 255] and rounds it
+	 * 
+	 * @param v
+	 *            value
+	 * @return rounded value
+	 */
+	private static int round(double v) {
+		return (int) (Math.min(Math.max(0, v), 255) + 0.5);
+	}
+
+	/**
+	 * Clamps value to [0, 255]
+	 * 
+	 * @param v
+	 *            value
+	 * @return clamped value
+	 */
+	private static int clamp(int v) {
+		return v < 0 ? 0 : (v > 255 ? 255 : v);
+	}
+}
@@ -0,0 +1,149 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates gradient operator for edge detection. Image is
+ * converted to byte plane of luminance, then magnitude of gradient is
+ * evaluated in integer arithmetic as sum of absolute values of horizontal
+ * and vertical derivatives. Pixels outside of image are replaced by the
+ * closest border pixels, so every pixel gets magnitude. Both passes run in
+ * row bands on all available cores
+ * 
+ * @author alstein
+ */
+public class EdgeDetector {
+
+	/**
+	 * Sobel operator, magnitude is up to 2040
+	 */
+	public static final EdgeDetector SOBEL = new EdgeDetector(1, 2);
+	/**
+	 * Scharr operator, magnitude is up to 8160
+	 */
+	public static final EdgeDetector SCHARR = new EdgeDetector(3, 10);
+	/**
+	 * Prewitt operator, magnitude is up to 1530
+	 */
+	public static final EdgeDetector PREWITT = new EdgeDetector(1, 1);
+	/**
+	 * Roberts cross operator over 2x2 window with pixel in its top left
+	 * corner, magnitude is up to 510
+	 */
+	public static final EdgeDetector ROBERTS = new EdgeDetector(0, 0);
+
+	// weight of corner elements of 3x3 derivative kernel, 0 for Roberts
+	private final int _corner;
+	// weight of middle elements of 3x3 derivative kernel, 0 for Roberts
+	private final int _middle;
+
+	/**
+	 * Constructor of 3x3 operator. Horizontal derivative kernel is
+	 * 
+	 * <pre>
+	 * -corner  0  corner
+	 * -middle  0  middle
+	 * -corner  0  corner
+	 * </pre>
+	 * 
+	 * vertical one is its transpose. Zero weights make Roberts operator
+	 * 
+	 * @param corner
+	 *            weight of corner elements
+	 * @param middle
+	 *            weight of middle elements
+	 */
+	private EdgeDetector(int corner, int middle) {
+		_corner = corner;
+		_middle = middle;
+	}
+
+	/**
+	 * Returns max magnitude of gradient
+	 * 
+	 * @return max magnitude
+	 */
+	public int getMaxMagnitude() {
+		if (_corner == 0) {
+			return 2 * 255;
+		}
+		return 2 * (2 * _corner + _middle) * 255;
+	}
+
+	/**
+	 * Computes luminance plane of image
+	 * 
+	 * @param o
+	 *            image
+	 * @return luminance of pixels row by row
+	 */
+	public static byte[] getLuminance(BufferedImage o) {
+		final int width = o.getWidth(), height = o.getHeight();
+		final int data[] = Pixels.getPixels(o);
+		final byte luminance[] = new byte[width * height];
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int p = first_row * width; p < last_row * width; ++p) {
+					int rgb = data[p];
+					luminance[p] = (byte) ((299 * ((rgb >> 16) & 0xFF) + 587
+							* ((rgb >> 8) & 0xFF) + 114 * (rgb & 0xFF) + 500) / 1000);
+				}
+			}
+		});
+		return luminance;
+	}
+
+	/**
+	 * Computes gradient magnitude plane of image
+	 * 
+	 * @param o
+	 *            image
+	 * @return gradient magnitudes
+	 */
+	public GradientPlane apply(BufferedImage o) {
+		final int width = o.getWidth(), height = o.getHeight();
+		final byte luminance[] = getLuminance(o);
+		final short magnitudes[] = new short[width * height];
+		final int a = _corner, b = _middle;
+		final boolean roberts = _corner == 0;
+		TileScheduler.execute(height, 1, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int top = Math.max(h - 1, 0) * width;
+					int mid = h * width;
+					int bot = Math.min(h + 1, height - 1) * width;
+					for (int w = 0; w < width; ++w) {
+						int l = Math.max(w - 1, 0);
+						int r = Math.min(w + 1, width - 1);
+						int s;
+						if (roberts) {
+							int g11 = luminance[mid + w] & 0xFF;
+							int g12 = luminance[bot + w] & 0xFF;
+							int g21 = luminance[mid + r] & 0xFF;
+							int g22 = luminance[bot + r] & 0xFF;
+							s = Math.abs(g11 - g22) + Math.abs(g12 - g21);
+						} else {
+							int tl = luminance[top + l] & 0xFF;
+							int tc = luminance[top + w] & 0xFF;
+							int tr = luminance[top + r] & 0xFF;
+							int ml = luminance[mid + l] & 0xFF;
+							int mr = luminance[mid + r] & 0xFF;
+							int bl = luminance[bot + l] & 0xFF;
+							int bc = luminance[bot + w] & 0xFF;
+							int br = luminance[bot + r] & 0xFF;
+							int gx = a * (tr - tl + br - bl) + b * (mr - ml);
+							int gy = a * (bl - tl + br - tr) + b * (bc - tc);
+							s = Math.abs(gx) + Math.abs(gy);
+						}
+						magnitudes[mid + w] = (short) s;
+					}
+				}
+			}
+		});
+		return new GradientPlane(width, height, o.getType(), magnitudes);
+	}
+}
@@ -0,0 +1,385 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class encapsulates error diffusion dithering kernel. Image is scanned row
+ * by row, every channel is quantized to the closest of evenly spaced levels
+ * and quantization error is distributed to not yet processed neighbours
+ * according to kernel. Only as many rows of float errors per channel as
+ * kernel has rows (plus one per worker) are kept, so memory is linear in
+ * image width. Rows are dithered in wavefront order by several workers
+ * 
+ * @author alstein
+ */
+public class ErrorDiffusion {
+
+	/**
+	 * Floyd-Steinberg kernel
+	 */
+	public static final ErrorDiffusion FLOYD_STEINBERG = new ErrorDiffusion(
+			new int[][] { { 0, 0, 7 }, { 3, 5, 1 } }, 16);
+	/**
+	 * Jarvis-Judice-Ninke kernel
+	 */
+	public static final ErrorDiffusion JARVIS_JUDICE_NINKE = new ErrorDiffusion(
+			new int[][] { { 0, 0, 0, 7, 5 }, { 3, 5, 7, 5, 3 },
+					{ 1, 3, 5, 3, 1 } }, 48);
+	/**
+	 * Stucki kernel
+	 */
+	public static final ErrorDiffusion STUCKI = new ErrorDiffusion(new int[][] {
+			{ 0, 0, 0, 8, 4 }, { 2, 4, 8, 4, 2 }, { 1, 2, 4, 2, 1 } }, 42);
+
+	// min number of pixels of image dithered by several workers
+	public static final int PARALLEL_MIN_PIXELS = 1 << 16;
+	// number of pixels processed by wavefront worker between progress
+	// updates
+	public static final int WAVEFRONT_BLOCK = 64;
+	// number of busy-wait iterations between cancellation checks
+	private static final int WAIT_SPINS = 256;
+
+	// number of kernel rows
+	private final int _rows;
+	// half width of kernel
+	private final int _m_w;
+	// row offsets of non-zero taps
+	private final int _tap_rows[];
+	// column offsets of non-zero taps
+	private final int _tap_cols[];
+	// weights of non-zero taps
+	private final float _tap_weights[];
+
+	/**
+	 * Constructor. First kernel row corresponds to the current row, its
+	 * central element to the current pixel. Elements of first row up to and
+	 * including central one must be zero
+	 * 
+	 * @param m
+	 *            kernel with odd number of columns
+	 * @param divisor
+	 *            divisor of kernel elements
+	 */
+	public ErrorDiffusion(int m[][], int divisor) {
+		if (m.length == 0 || m[0].length % 2 == 0 || divisor <= 0) {
+			throw new IllegalArgumentException("invalid kernel");
+		}
+		_rows = m.length;
+		_m_w = m[0].length / 2;
+		int count = 0;
+		for (int y = 0; y < _rows; ++y) {
+			if (m[y].length != m[0].length) {
+				throw new IllegalArgumentException("kernel is not rectangular");
+			}
+			for (int x = 0; x < m[y].length; ++x) {
+				if (m[y][x] == 0) {
+					continue;
+				}
+				if (y == 0 && x <= _m_w) {
+					throw new IllegalArgumentException(
+							"kernel distributes error to processed pixels");
+				}
+				++count;
+			}
+		}
+		_tap_rows = new int[count];
+		_tap_cols = new int[count];
+		_tap_weights = new float[count];
+		int t = 0;
+		for (int y = 0; y < _rows; ++y) {
+			for (int x = 0; x < m[y].length; ++x) {
+				if (m[y][x] != 0) {
+					_tap_rows[t] = y;
+					_tap_cols[t] = x - _m_w;
+					_tap_weights[t] = (float) m[y][x] / divisor;
+					++t;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies dithering to image scanning every row left to right
+	 * 
+	 * @param o
+	 *            image
+	 * @param r_count
+	 *            number of red levels
+	 * @param g_count
+	 *            number of green levels
+	 * @param b_count
+	 *            number of blue levels
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o, int r_count, int g_count,
+			int b_count) {
+		return apply(o, r_count, g_count, b_count, false);
+	}
+
+	/**
+	 * Applies dithering to image. Serpentine scan processes odd rows right to
+	 * left with mirrored kernel, which suppresses directional artifacts. Large
+	 * images scanned left to right are dithered by all workers of
+	 * {@link TileScheduler}, see
+	 * {@link #apply(BufferedImage, int, int, int, boolean, int)}
+	 * 
+	 * @param o
+	 *            image
+	 * @param r_count
+	 *            number of red levels
+	 * @param g_count
+	 *            number of green levels
+	 * @param b_count
+	 *            number of blue levels
+	 * @param serpentine
+	 *            true for serpentine scan
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o, int r_count, int g_count,
+			int b_count, boolean serpentine) {
+		int workers = 1;
+		if ((long) o.getWidth() * o.getHeight() >= PARALLEL_MIN_PIXELS) {
+			workers = TileScheduler.getParallelism();
+		}
+		return apply(o, r_count, g_count, b_count, serpentine, workers);
+	}
+
+	/**
+	 * Applies dithering to image using given number of workers. Workers
+	 * process rows in wavefront order: pixel of row may be processed once the
+	 * previous row is done up to twice the half kernel width pixels to the
+	 * right of it. Errors are accumulated in exactly the same order as by
+	 * sequential scan, so result does not depend on number of workers.
+	 * Serpentine scan is always sequential, since its rows run towards each
+	 * other
+	 * 
+	 * @param o
+	 *            image
+	 * @param r_count
+	 *            number of red levels
+	 * @param g_count
+	 *            number of green levels
+	 * @param b_count
+	 *            number of blue levels
+	 * @param serpentine
+	 *            true for serpentine scan
+	 * @param workers
+	 *            number of workers
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o, int r_count, int g_count,
+			int b_count, boolean serpentine, int workers) {
+		int width = o.getWidth(), height = o.getHeight();
+		if (serpentine || height < 2) {
+			workers = 1;
+		}
+		workers = Math.max(1, workers);
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		Job job = new Job(Pixels.getPixels(o), Pixels.getPixels(n), width,
+				height, new int[] { r_count, g_count, b_count }, workers
+						+ _rows);
+		if (workers == 1) {
+			for (int h = 0; h < height; ++h) {
+				TileScheduler.checkCancelled();
+				job.startRow(h);
+				job.processRow(h, 0, width, serpentine && (h & 1) == 1);
+			}
+		} else {
+			TileScheduler.executeWorkers(workers, job);
+		}
+		Pixels.setPixels(n, job._n_data);
+		return n;
+	}
+
+	/**
+	 * Class encapsulates state of dithering of one image. As runnable it is
+	 * wavefront worker taking next unprocessed row until all rows are taken
+	 */
+	private class Job implements Runnable {
+
+		private final int _data[];
+		private final int _n_data[];
+		private final int _width;
+		private final int _height;
+		// scales mapping channel value to level index
+		private final float _scales[] = new float[3];
+		// levels of every channel
+		private final float _levels[][] = new float[3][];
+		// rounded 8-bit values of levels
+		private final int _values[][] = new int[3][];
+		// ring of error rows of every channel, row h is stored in slot
+		// h % slots. Rows are padded by half kernel width on both sides so
+		// errors falling outside of image need no checks
+		private final float _errors[][][];
+		private final int _slots;
+		// next row to be taken by worker
+		private final AtomicInteger _next_row = new AtomicInteger();
+		// progress of row in every slot, encoded as row * (width + 1) +
+		// number of processed pixels, so values left by earlier rows in the
+		// same slot are always smaller
+		private final AtomicLongArray _progress;
+		// set when worker fails, so others stop waiting for it
+		private volatile boolean _failed;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param data
+		 *            source pixels
+		 * @param n_data
+		 *            destination pixels
+		 * @param width
+		 *            image width
+		 * @param height
+		 *            image height
+		 * @param counts
+		 *            number of levels of every channel
+		 * @param slots
+		 *            number of error rows in ring, at least number of workers
+		 *            plus number of kernel rows
+		 */
+		public Job(int data[], int n_data[], int width, int height,
+				int counts[], int slots) {
+			_data = data;
+			_n_data = n_data;
+			_width = width;
+			_height = height;
+			for (int k = 0; k < 3; ++k) {
+				int count = counts[k];
+				if (count < 1) {
+					throw new IllegalArgumentException("count must be positive");
+				}
+				_levels[k] = new float[count];
+				_values[k] = new int[count];
+				if (count == 1) {
+					_levels[k][0] = 255;
+					_values[k][0] = 255;
+					continue;
+				}
+				_scales[k] = (float) (count - 1) / 255;
+				for (int q = 0; q < count; ++q) {
+					_levels[k][q] = 255f * q / (count - 1);
+					_values[k][q] = (int) (255.0 * q / (count - 1) + 0.5);
+				}
+			}
+			_slots = slots;
+			_errors = new float[3][slots][width + 2 * _m_w];
+			_progress = new AtomicLongArray(slots);
+		}
+
+		/**
+		 * Clears error row first written by given row. The previous row in
+		 * the same slot must be finished
+		 * 
+		 * @param h
+		 *            row
+		 */
+		public void startRow(int h) {
+			int slot = (h + _rows - 1) % _slots;
+			for (int k = 0; k < 3; ++k) {
+				Arrays.fill(_errors[k][slot], 0);
+			}
+		}
+
+		/**
+		 * Processes part of row
+		 * 
+		 * @param h
+		 *            row
+		 * @param first
+		 *            index of first pixel in scan order (inclusive)
+		 * @param last
+		 *            index of last pixel in scan order (exclusive)
+		 * @param reverse
+		 *            true if row is scanned right to left
+		 */
+		public void processRow(int h, int first, int last, boolean reverse) {
+			int taps = _tap_weights.length;
+			int dir = reverse ? -1 : 1;
+			// error rows touched by kernel, indexed by kernel row
+			float rows[][] = new float[_rows][];
+			for (int k = 0; k < 3; ++k) {
+				for (int y = 0; y < _rows; ++y) {
+					rows[y] = _errors[k][(h + y) % _slots];
+				}
+				float levels[] = _levels[k];
+				int values[] = _values[k];
+				float scale = _scales[k];
+				int shift = 16 - 8 * k;
+				for (int i = first; i < last; ++i) {
+					int w = reverse ? _width - 1 - i : i;
+					int p = h * _width + w;
+					float v = ((_data[p] >> shift) & 0xFF) + rows[0][w + _m_w];
+					int q = (int) (v * scale + 0.5f);
+					if (q < 0) {
+						q = 0;
+					} else if (q >= levels.length) {
+						q = levels.length - 1;
+					}
+					float e = v - levels[q];
+					_n_data[p] |= values[q] << shift;
+					for (int t = 0; t < taps; ++t) {
+						rows[_tap_rows[t]][w + _m_w + dir * _tap_cols[t]] += e
+								* _tap_weights[t];
+					}
+				}
+			}
+		}
+
+		/**
+		 * Waits until row is processed up to given number of pixels
+		 * 
+		 * @param h
+		 *            row
+		 * @param count
+		 *            number of pixels
+		 */
+		private void waitForRow(int h, int count) {
+			long target = (long) h * (_width + 1) + count;
+			int slot = h % _slots;
+			for (int spins = 1; _progress.get(slot) < target; ++spins) {
+				if (spins % WAIT_SPINS == 0) {
+					if (_failed) {
+						throw new CancellationException("worker failed");
+					}
+					TileScheduler.checkCancelled();
+					Thread.yield();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int lag = 2 * _m_w;
+			try {
+				for (;;) {
+					int h = _next_row.getAndIncrement();
+					if (h >= _height) {
+						return;
+					}
+					TileScheduler.checkCancelled();
+					startRow(h);
+					for (int first = 0; first < _width; first += WAVEFRONT_BLOCK) {
+						int last = Math.min(_width, first + WAVEFRONT_BLOCK);
+						if (h > 0) {
+							waitForRow(h - 1, Math.min(_width, last + lag));
+						}
+						processRow(h, first, last, false);
+						_progress.set(h % _slots, (long) h * (_width + 1)
+								+ last);
+					}
+				}
+			} catch (RuntimeException ex) {
+				_failed = true;
+				throw ex;
+			} catch (Error ex) {
+				_failed = true;
+				throw ex;
+			}
+		}
+	}
+}
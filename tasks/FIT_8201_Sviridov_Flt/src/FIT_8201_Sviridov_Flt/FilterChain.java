@@ -0,0 +1,338 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class encapsulates chain of filters parsed from text specification, e.g.
+ * 
+ * <pre>
+ * gamma:0.8,median:3,sharpen3,scale:640x480:lanczos3
+ * </pre>
+ * 
+ * Filters are separated by commas, arguments follow filter name after
+ * colons. Adjacent point operations, median filters and convolutions are
+ * fused into one {@link FilterPipeline}, other filters are applied one by
+ * one. Chain holds no state, so it may be applied to many images
+ * concurrently
+ * 
+ * @author alstein
+ */
+public class FilterChain implements ImageFilter {
+
+	/**
+	 * Description of supported filters
+	 */
+	public static final String FILTERS = "  grey, negative, gamma:G, "
+			+ "brightness:B, contrast:C,\n"
+			+ "  blur, emboss, sharpen3, sharpen5, median:SIZE, aquarelle,\n"
+			+ "  sobel:T, roberts:T, zoom, "
+			+ "scale:WxH[:bilinear|bicubic|lanczos3],\n"
+			+ "  ordered[:R:G:B], fs[:R:G:B], box:R, gauss:SIGMA, "
+			+ "adaptive:R:K";
+
+	private final List<ImageFilter> _filters = new ArrayList<ImageFilter>();
+	private final String _spec;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param spec
+	 *            chain specification
+	 * @throws IllegalArgumentException
+	 *             if specification is malformed
+	 */
+	public FilterChain(String spec) {
+		_spec = spec;
+		FilterPipeline pipeline = null;
+		for (String token : spec.split(",")) {
+			String args[] = token.trim().split(":");
+			String name = args[0].toLowerCase();
+			if (name.length() == 0) {
+				throw new IllegalArgumentException("empty filter in chain");
+			}
+
+			// filters streamed through pipeline
+			FilterPipeline next = pipeline != null ? pipeline
+					: new FilterPipeline();
+			boolean streamed = true;
+			if (name.equals("negative")) {
+				checkArgs(args, 0);
+				next.then(LookupTable.getNegativeTable());
+			} else if (name.equals("gamma")) {
+				checkArgs(args, 1);
+				next.then(LookupTable.getGammaTable(parseDouble(args[1])));
+			} else if (name.equals("brightness")) {
+				checkArgs(args, 1);
+				next.then(LookupTable
+						.getBrightnessTable(parseDouble(args[1])));
+			} else if (name.equals("contrast")) {
+				checkArgs(args, 1);
+				next.then(LookupTable
+						.getContrastTable(parseDouble(args[1])));
+			} else if (name.equals("blur")) {
+				checkArgs(args, 0);
+				next.convolve(Filters.getBlurMatrix(), 0, 0, 0);
+			} else if (name.equals("emboss")) {
+				checkArgs(args, 0);
+				next.convolve(Filters.getEmbossMatrix(), 128, 128, 128);
+			} else if (name.equals("sharpen3")) {
+				checkArgs(args, 0);
+				next.convolve(Filters.getSharpen3Matrix(), 0, 0, 0);
+			} else if (name.equals("sharpen5")) {
+				checkArgs(args, 0);
+				next.convolve(Filters.getSharpen5Matrix(), 0, 0, 0);
+			} else if (name.equals("median")) {
+				checkArgs(args, 1);
+				next.median(parseInt(args[1]));
+			} else if (name.equals("aquarelle")) {
+				checkArgs(args, 0);
+				next.median(5).convolve(Filters.getSharpen5Matrix(), 0, 0,
+						0);
+			} else {
+				streamed = false;
+			}
+			if (streamed) {
+				pipeline = next;
+				continue;
+			}
+
+			flush(pipeline);
+			pipeline = null;
+			_filters.add(parseFilter(name, args));
+		}
+		flush(pipeline);
+	}
+
+	/**
+	 * Appends pipeline to chain
+	 * 
+	 * @param pipeline
+	 *            pipeline, may be null
+	 */
+	private void flush(final FilterPipeline pipeline) {
+		if (pipeline == null) {
+			return;
+		}
+		_filters.add(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return pipeline.apply(o);
+			}
+		});
+	}
+
+	/**
+	 * Parses filter which is not streamed through pipeline
+	 * 
+	 * @param name
+	 *            filter name
+	 * @param args
+	 *            filter name followed by arguments
+	 * @return filter
+	 */
+	private static ImageFilter parseFilter(String name, String args[]) {
+		if (name.equals("grey") || name.equals("gray")) {
+			checkArgs(args, 0);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getGreyscaleImage(o);
+				}
+			};
+		} else if (name.equals("sobel") || name.equals("roberts")) {
+			checkArgs(args, 1);
+			final EdgeDetector detector = name.equals("sobel") ? EdgeDetector.SOBEL
+					: EdgeDetector.ROBERTS;
+			final double threshold = parseDouble(args[1]);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return detector.apply(o).getThresholdImage(threshold);
+				}
+			};
+		} else if (name.equals("box")) {
+			checkArgs(args, 1);
+			final int radius = parseInt(args[1]);
+			if (radius < 0 || radius > SummedAreaTable.MAX_RADIUS) {
+				throw new IllegalArgumentException("radius must be in [0, "
+						+ SummedAreaTable.MAX_RADIUS + "]");
+			}
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getBoxBlurImage(o, radius);
+				}
+			};
+		} else if (name.equals("gauss")) {
+			checkArgs(args, 1);
+			final double sigma = parseDouble(args[1]);
+			if (!(sigma >= 0)) {
+				throw new IllegalArgumentException("sigma must be non-negative");
+			}
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getGaussianBlurImage(o, sigma);
+				}
+			};
+		} else if (name.equals("adaptive")) {
+			checkArgs(args, 2);
+			final int radius = parseInt(args[1]);
+			final double k = parseDouble(args[2]);
+			if (radius < 0 || radius > SummedAreaTable.MAX_RADIUS) {
+				throw new IllegalArgumentException("radius must be in [0, "
+						+ SummedAreaTable.MAX_RADIUS + "]");
+			}
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getAdaptiveThresholdImage(o, radius, k);
+				}
+			};
+		} else if (name.equals("zoom")) {
+			checkArgs(args, 0);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getDoubleScaleImage(o);
+				}
+			};
+		} else if (name.equals("scale")) {
+			if (args.length != 2 && args.length != 3) {
+				throw new IllegalArgumentException("scale expects WxH[:kernel]");
+			}
+			String size[] = args[1].toLowerCase().split("x");
+			if (size.length != 2) {
+				throw new IllegalArgumentException("scale expects WxH[:kernel]");
+			}
+			final int width = parseInt(size[0]), height = parseInt(size[1]);
+			if (width < 1 || height < 1) {
+				throw new IllegalArgumentException("size must be positive");
+			}
+			final Resampler resampler = args.length == 2 ? Resampler.BICUBIC
+					: parseResampler(args[2]);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getScaledImage(o, width, height, resampler);
+				}
+			};
+		} else if (name.equals("ordered") || name.equals("fs")) {
+			if (args.length != 1 && args.length != 4) {
+				throw new IllegalArgumentException(name + " expects R:G:B");
+			}
+			final int r = args.length == 1 ? 2 : parseInt(args[1]);
+			final int g = args.length == 1 ? 2 : parseInt(args[2]);
+			final int b = args.length == 1 ? 2 : parseInt(args[3]);
+			if (r < 2 || g < 2 || b < 2) {
+				throw new IllegalArgumentException(
+						"count must be at least 2");
+			}
+			if (name.equals("ordered")) {
+				final OrderedDither mask = OrderedDither.getBayer(4);
+				return new ImageFilter() {
+
+					@Override
+					public BufferedImage apply(BufferedImage o) {
+						return Filters.getOrderedDitherImage(o, mask, r, g, b);
+					}
+				};
+			}
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return Filters.getFloydSteinbergDitheredImage(o, r, g, b);
+				}
+			};
+		}
+		throw new IllegalArgumentException("unknown filter: " + name);
+	}
+
+	/**
+	 * Parses resampling kernel name
+	 * 
+	 * @param name
+	 *            kernel name
+	 * @return resampler
+	 */
+	private static Resampler parseResampler(String name) {
+		name = name.toLowerCase();
+		if (name.equals("bilinear")) {
+			return Resampler.BILINEAR;
+		} else if (name.equals("bicubic")) {
+			return Resampler.BICUBIC;
+		} else if (name.equals("lanczos3")) {
+			return Resampler.LANCZOS3;
+		}
+		throw new IllegalArgumentException("unknown kernel: " + name);
+	}
+
+	/**
+	 * Checks number of filter arguments
+	 * 
+	 * @param args
+	 *            filter name followed by arguments
+	 * @param count
+	 *            expected number of arguments
+	 */
+	private static void checkArgs(String args[], int count) {
+		if (args.length != count + 1) {
+			throw new IllegalArgumentException(args[0] + " expects " + count
+					+ " argument(s)");
+		}
+	}
+
+	/**
+	 * Parses integer argument
+	 * 
+	 * @param s
+	 *            argument
+	 * @return value
+	 */
+	private static int parseInt(String s) {
+		try {
+			return Integer.parseInt(s.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid number: " + s);
+		}
+	}
+
+	/**
+	 * Parses real argument
+	 * 
+	 * @param s
+	 *            argument
+	 * @return value
+	 */
+	private static double parseDouble(String s) {
+		try {
+			return Double.parseDouble(s.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid number: " + s);
+		}
+	}
+
+	@Override
+	public BufferedImage apply(BufferedImage o) {
+		for (ImageFilter filter : _filters) {
+			o = filter.apply(o);
+		}
+		return o;
+	}
+
+	@Override
+	public String toString() {
+		return _spec;
+	}
+}
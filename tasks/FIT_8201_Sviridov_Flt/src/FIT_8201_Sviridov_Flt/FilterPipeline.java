@@ -0,0 +1,335 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class encapsulates lazily evaluated chain of filters. Filters are only
+ * recorded until chain is applied. Then adjacent point operations are fused
+ * into one lookup table which is applied while rows are passed between
+ * stages, and neighbourhood operations are streamed through rolling windows
+ * of rows, so only final image is materialized. Every band of rows is
+ * processed independently, recomputing halo rows of intermediate stages
+ * 
+ * @author alstein
+ */
+public class FilterPipeline {
+
+	/**
+	 * Factory of row filters of one neighbourhood stage
+	 */
+	private static interface Stage {
+
+		/**
+		 * Returns number of rows above and below needed by stage
+		 * 
+		 * @return stage radius
+		 */
+		public int getRadius();
+
+		/**
+		 * Creates row filter of the stage for one band
+		 * 
+		 * @return row filter
+		 */
+		public RowFilter newRowFilter();
+	}
+
+	/**
+	 * Receiver of rows passed along the chain in increasing order
+	 */
+	private static interface RowSink {
+
+		/**
+		 * Receives row of packed pixels
+		 * 
+		 * @param src
+		 *            array holding row
+		 * @param offset
+		 *            offset of row in array
+		 * @param y
+		 *            row index
+		 */
+		public void pushRow(int src[], int offset, int y);
+	}
+
+	/**
+	 * Sink writing rows to resulting image
+	 */
+	private static class ImageSink implements RowSink {
+
+		private final int _n_data[];
+		private final int _width;
+		private final LookupTable _table;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param n_data
+		 *            destination pixels
+		 * @param width
+		 *            image width
+		 * @param table
+		 *            point operation applied to rows, may be null
+		 */
+		public ImageSink(int n_data[], int width, LookupTable table) {
+			_n_data = n_data;
+			_width = width;
+			_table = table;
+		}
+
+		@Override
+		public void pushRow(int src[], int offset, int y) {
+			if (_table == null) {
+				System.arraycopy(src, offset, _n_data, y * _width, _width);
+			} else {
+				_table.map(src, offset, _n_data, y * _width, _width);
+			}
+		}
+	}
+
+	/**
+	 * Sink running row filter over rolling window of received rows and
+	 * passing filtered rows further. Rows not covered by filter vertically are
+	 * passed unchanged
+	 */
+	private static class StageSink implements RowSink {
+
+		private final RowFilter _filter;
+		private final LookupTable _table;
+		private final int _width;
+		private final int _height;
+		private final int _radius;
+		// last received rows, row y is kept in slot y % length
+		private final int _ring[][];
+		// window of ring rows ordered for filter
+		private final int _window[][];
+		private final int _out[];
+		// next row to be passed further
+		private int _next_row;
+		// row after last one to be passed further
+		private final int _last_row;
+		private final RowSink _next;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param filter
+		 *            row filter
+		 * @param table
+		 *            point operation applied to received rows, may be null
+		 * @param width
+		 *            image width
+		 * @param height
+		 *            image height
+		 * @param first_row
+		 *            first row to be passed further (inclusive)
+		 * @param last_row
+		 *            last row to be passed further (exclusive)
+		 * @param next
+		 *            next sink
+		 */
+		public StageSink(RowFilter filter, LookupTable table, int width,
+				int height, int first_row, int last_row, RowSink next) {
+			_filter = filter;
+			_table = table;
+			_width = width;
+			_height = height;
+			_radius = filter.getRadius();
+			_ring = new int[2 * _radius + 1][width];
+			_window = new int[2 * _radius + 1][];
+			_out = new int[width];
+			_next_row = first_row;
+			_last_row = last_row;
+			_next = next;
+		}
+
+		@Override
+		public void pushRow(int src[], int offset, int y) {
+			int k_rows = _ring.length;
+			int slot[] = _ring[y % k_rows];
+			if (_table == null) {
+				System.arraycopy(src, offset, slot, 0, _width);
+			} else {
+				_table.map(src, offset, slot, 0, _width);
+			}
+
+			while (_next_row < _last_row) {
+				int h = _next_row;
+				boolean covered = h >= _radius && h < _height - _radius;
+				if (y < (covered ? h + _radius : h)) {
+					break;
+				}
+				if (covered) {
+					for (int i = 0; i < k_rows; ++i) {
+						_window[i] = _ring[(h - _radius + i) % k_rows];
+					}
+					_filter.filterRow(_window, _out, _width);
+					_next.pushRow(_out, 0, h);
+				} else {
+					_next.pushRow(_ring[h % k_rows], 0, h);
+				}
+				++_next_row;
+			}
+		}
+	}
+
+	// recorded operations, either LookupTable or Stage
+	private final List<Object> _operations = new ArrayList<Object>();
+
+	/**
+	 * Appends point operation to chain
+	 * 
+	 * @param table
+	 *            lookup table of operation
+	 * @return this pipeline
+	 */
+	public FilterPipeline then(LookupTable table) {
+		_operations.add(table);
+		return this;
+	}
+
+	/**
+	 * Appends median filter to chain
+	 * 
+	 * @param size
+	 *            window size (odd)
+	 * @return this pipeline
+	 */
+	public FilterPipeline median(final int size) {
+		if (size < 1 || size % 2 == 0) {
+			throw new IllegalArgumentException("window size must be odd");
+		}
+		if (size == 1) {
+			return this;
+		}
+		_operations.add(new Stage() {
+
+			@Override
+			public int getRadius() {
+				return size / 2;
+			}
+
+			@Override
+			public RowFilter newRowFilter() {
+				return MedianFilter.getRowFilter(size);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Appends convolution to chain
+	 * 
+	 * @param m
+	 *            convolution matrix with odd number of rows and columns
+	 * @param r_s
+	 *            number to be added to R component
+	 * @param g_s
+	 *            number to be added to G component
+	 * @param b_s
+	 *            number to be added to B component
+	 * @return this pipeline
+	 */
+	public FilterPipeline convolve(double m[][], final double r_s,
+			final double g_s, final double b_s) {
+		final Convolution convolution = new Convolution(m);
+		_operations.add(new Stage() {
+
+			@Override
+			public int getRadius() {
+				return convolution.getRadius();
+			}
+
+			@Override
+			public RowFilter newRowFilter() {
+				return convolution.getRowFilter(r_s, g_s, b_s);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Applies chain to image
+	 * 
+	 * @param o
+	 *            original image
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o) {
+		int width = o.getWidth(), height = o.getHeight();
+		int data[] = Pixels.getPixels(o);
+
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		int n_data[] = Pixels.getTargetPixels(n);
+
+		apply(data, n_data, width, height);
+
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Applies chain to packed pixels
+	 * 
+	 * @param data
+	 *            source pixels
+	 * @param n_data
+	 *            destination pixels (must differ from source)
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	public void apply(final int data[], final int n_data[], final int width,
+			final int height) {
+		// neighbourhood stages and point operations preceding each of them,
+		// the last point operation is applied to resulting rows
+		final List<Stage> stages = new ArrayList<Stage>();
+		final List<LookupTable> tables = new ArrayList<LookupTable>();
+		LookupTable table = null;
+		for (Object operation : _operations) {
+			if (operation instanceof LookupTable) {
+				LookupTable next = (LookupTable) operation;
+				table = table == null ? next : table.then(next);
+			} else {
+				stages.add((Stage) operation);
+				tables.add(table);
+				table = null;
+			}
+		}
+		tables.add(table);
+
+		final int radii[] = new int[stages.size()];
+		int radius = 0;
+		for (int k = 0; k < radii.length; ++k) {
+			radii[k] = stages.get(k).getRadius();
+			radius += radii[k];
+		}
+		final int total_radius = radius;
+
+		TileScheduler.execute(height, total_radius, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				RowSink sink = new ImageSink(n_data, width,
+						tables.get(radii.length));
+				// rows of stage output needed by following stages
+				int halo = 0;
+				for (int k = radii.length - 1; k >= 0; --k) {
+					sink = new StageSink(stages.get(k).newRowFilter(),
+							tables.get(k), width, height,
+							Math.max(0, first_row - halo),
+							Math.min(height, last_row + halo), sink);
+					halo += radii[k];
+				}
+				int first = Math.max(0, first_row - total_radius);
+				int last = Math.min(height, last_row + total_radius);
+				for (int y = first; y < last; ++y) {
+					sink.pushRow(data, y * width, y);
+				}
+			}
+		});
+	}
+}
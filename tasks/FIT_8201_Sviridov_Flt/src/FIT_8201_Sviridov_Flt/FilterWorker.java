@@ -0,0 +1,411 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.swing.SwingUtilities;
+
+/**
+ * Class runs filters off the event dispatch thread. Every new job cancels
+ * the previous one, so only result of the last submitted job is shown. For
+ * large enough images job first filters half-sized copy and shows it as
+ * preview, then shows full resolution result. Disk-backed images are
+ * filtered strip by strip into new disk-backed result. Jobs may also be run
+ * on reduced proxy copy of image only, which keeps interactive adjustment
+ * cheap regardless of image size. Methods must be called from the event
+ * dispatch thread
+ * 
+ * @author alstein
+ */
+public class FilterWorker {
+
+	// min width and height of image for which preview is made
+	public static final int PREVIEW_MIN_SIZE = 128;
+
+	private final ExecutorService _executor;
+	// token of last submitted job
+	private CancellationToken _token;
+	// last reduced copy made for proxy jobs and its source, accessed by
+	// worker thread only
+	private Object _proxy_source;
+	private BufferedImage _proxy;
+	private int _proxy_factor;
+
+	/**
+	 * Default constructor
+	 */
+	public FilterWorker() {
+		_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Filter worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Submits filter job, cancelling the previous one
+	 * 
+	 * @param o
+	 *            original image
+	 * @param filter
+	 *            filter
+	 * @param target
+	 *            panel to show result in
+	 */
+	public void submit(final BufferedImage o, final ImageFilter filter,
+			final ImageResultPanel target) {
+		cancel();
+		final CancellationToken token = new CancellationToken();
+		_token = token;
+		_executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				TileScheduler.setCancellationToken(token);
+				try {
+					token.check();
+					if (o.getWidth() >= PREVIEW_MIN_SIZE
+							&& o.getHeight() >= PREVIEW_MIN_SIZE) {
+						BufferedImage p = filter.apply(getReducedImage(o, 2));
+						publish(token, target, p, 2, true);
+						token.check();
+					}
+					publish(token, target, filter.apply(o), 1, false);
+				} catch (CancellationException ex) {
+					// newer job is submitted
+				} catch (RuntimeException ex) {
+					System.out.println(ex);
+				} finally {
+					TileScheduler.setCancellationToken(null);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submits filter job on disk-backed image, cancelling the previous one.
+	 * Result is written to new disk-backed image, see
+	 * {@link TiledImage#apply(ImageFilter, int)}
+	 * 
+	 * @param o
+	 *            original image
+	 * @param filter
+	 *            filter keeping image size
+	 * @param radius
+	 *            number of rows around pixel read by filter
+	 * @param target
+	 *            panel to show result in
+	 */
+	public void submit(final TiledImage o, final ImageFilter filter,
+			final int radius, final ImageResultPanel target) {
+		cancel();
+		final CancellationToken token = new CancellationToken();
+		_token = token;
+		_executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				TileScheduler.setCancellationToken(token);
+				try {
+					token.check();
+					publish(token, target, o.apply(filter, radius));
+				} catch (CancellationException ex) {
+					// newer job is submitted
+				} catch (IOException ex) {
+					// image may be closed by newer job
+					if (!token.isCancelled()) {
+						System.out.println(ex);
+					}
+				} catch (RuntimeException ex) {
+					System.out.println(ex);
+				} finally {
+					TileScheduler.setCancellationToken(null);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submits filter job on proxy copy of image reduced to fit given size,
+	 * cancelling the previous one. Result is shown as preview scaled back to
+	 * size of original image. If image already fits, it is filtered as is
+	 * 
+	 * @param o
+	 *            original image
+	 * @param filter
+	 *            filter
+	 * @param target
+	 *            panel to show result in
+	 * @param width
+	 *            max width of proxy
+	 * @param height
+	 *            max height of proxy
+	 * @return true if proxy is used, false if job filters original image and
+	 *         its result is final
+	 */
+	public boolean submitProxy(final BufferedImage o,
+			final ImageFilter filter, final ImageResultPanel target,
+			int width, int height) {
+		final int factor = getProxyFactor(o.getWidth(), o.getHeight(), width,
+				height);
+		if (factor == 1) {
+			submit(o, filter, target);
+			return false;
+		}
+		cancel();
+		final CancellationToken token = new CancellationToken();
+		_token = token;
+		_executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				TileScheduler.setCancellationToken(token);
+				try {
+					token.check();
+					BufferedImage p = filter.apply(getProxy(o, factor));
+					publish(token, target, p, factor, true);
+				} catch (CancellationException ex) {
+					// newer job is submitted
+				} catch (RuntimeException ex) {
+					System.out.println(ex);
+				} finally {
+					TileScheduler.setCancellationToken(null);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Submits filter job on proxy copy of disk-backed image reduced to fit
+	 * given size, cancelling the previous one. Proxy is made in one pass over
+	 * image and is reused while the same image is adjusted. If image already
+	 * fits, it is filtered strip by strip
+	 * 
+	 * @param o
+	 *            original image
+	 * @param filter
+	 *            filter keeping image size
+	 * @param radius
+	 *            number of rows around pixel read by filter
+	 * @param target
+	 *            panel to show result in
+	 * @param width
+	 *            max width of proxy
+	 * @param height
+	 *            max height of proxy
+	 * @return true if proxy is used, false if job filters original image and
+	 *         its result is final
+	 */
+	public boolean submitProxy(final TiledImage o, final ImageFilter filter,
+			int radius, final ImageResultPanel target, int width, int height) {
+		final int factor = getProxyFactor(o.getWidth(), o.getHeight(), width,
+				height);
+		if (factor == 1) {
+			submit(o, filter, radius, target);
+			return false;
+		}
+		cancel();
+		final CancellationToken token = new CancellationToken();
+		_token = token;
+		_executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				TileScheduler.setCancellationToken(token);
+				try {
+					token.check();
+					BufferedImage p = filter.apply(getProxy(o, factor));
+					publish(token, target, p, factor, true);
+				} catch (CancellationException ex) {
+					// newer job is submitted
+				} catch (IOException ex) {
+					// image may be closed by newer job
+					if (!token.isCancelled()) {
+						System.out.println(ex);
+					}
+				} catch (RuntimeException ex) {
+					System.out.println(ex);
+				} finally {
+					TileScheduler.setCancellationToken(null);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Cancels last submitted job, its result will not be shown
+	 */
+	public void cancel() {
+		if (_token != null) {
+			_token.cancel();
+			_token = null;
+		}
+	}
+
+	/**
+	 * Computes integer reduction factor making image fit given size
+	 * 
+	 * @param img_width
+	 *            image width
+	 * @param img_height
+	 *            image height
+	 * @param width
+	 *            max width
+	 * @param height
+	 *            max height
+	 * @return reduction factor, 1 if image fits
+	 */
+	private static int getProxyFactor(int img_width, int img_height,
+			int width, int height) {
+		width = Math.max(width, 1);
+		height = Math.max(height, 1);
+		int factor_x = (img_width + width - 1) / width;
+		int factor_y = (img_height + height - 1) / height;
+		return Math.max(1, Math.max(factor_x, factor_y));
+	}
+
+	/**
+	 * Returns proxy copy of image, reusing the last one if it is made from the
+	 * same image with the same factor. Called on worker thread only
+	 * 
+	 * @param o
+	 *            image
+	 * @param factor
+	 *            reduction factor
+	 * @return reduced copy
+	 */
+	private BufferedImage getProxy(BufferedImage o, int factor) {
+		if (_proxy_source != o || _proxy_factor != factor) {
+			_proxy = getReducedImage(o, factor);
+			_proxy_source = o;
+			_proxy_factor = factor;
+		}
+		return _proxy;
+	}
+
+	/**
+	 * Returns proxy copy of disk-backed image, reusing the last one if it is
+	 * made from the same image with the same factor. Called on worker thread
+	 * only
+	 * 
+	 * @param o
+	 *            image
+	 * @param factor
+	 *            reduction factor
+	 * @return reduced copy
+	 * @throws IOException
+	 */
+	private BufferedImage getProxy(TiledImage o, int factor)
+			throws IOException {
+		if (_proxy_source != o || _proxy_factor != factor) {
+			_proxy = o.getScaledImage(Math.max(o.getWidth() / factor, 1),
+					Math.max(o.getHeight() / factor, 1));
+			_proxy_source = o;
+			_proxy_factor = factor;
+		}
+		return _proxy;
+	}
+
+	/**
+	 * Shows image in panel on the event dispatch thread unless job is
+	 * cancelled by then
+	 */
+	private static void publish(final CancellationToken token,
+			final ImageResultPanel target, final BufferedImage img,
+			final int scale, final boolean preview) {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				if (token.isCancelled()) {
+					return;
+				}
+				if (preview) {
+					target.setPreviewImage(img, scale);
+				} else {
+					target.setImage(img);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Shows disk-backed result in panel on the event dispatch thread, result
+	 * of cancelled job is closed
+	 */
+	private static void publish(final CancellationToken token,
+			final ImageResultPanel target, final TiledImage img) {
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				if (!token.isCancelled()) {
+					target.setTiledImage(img);
+					return;
+				}
+				try {
+					img.close();
+				} catch (IOException ex) {
+					System.out.println(ex);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Makes reduced image averaging factor x factor blocks of pixels. Pixels
+	 * of incomplete blocks at right and bottom edges are dropped
+	 * 
+	 * @param o
+	 *            image
+	 * @param factor
+	 *            reduction factor
+	 * @return reduced image
+	 */
+	private static BufferedImage getReducedImage(BufferedImage o, int factor) {
+		int width = Math.max(o.getWidth() / factor, 1);
+		int height = Math.max(o.getHeight() / factor, 1);
+		int block_w = Math.min(factor, o.getWidth());
+		int block_h = Math.min(factor, o.getHeight());
+		int o_width = o.getWidth();
+		int data[] = Pixels.getPixels(o);
+		BufferedImage n = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		int n_data[] = Pixels.getTargetPixels(n);
+		int count = block_w * block_h;
+		int sums[] = new int[3 * width];
+		for (int h = 0; h < height; ++h) {
+			TileScheduler.checkCancelled();
+			Arrays.fill(sums, 0);
+			for (int y = h * factor; y < h * factor + block_h; ++y) {
+				int row = y * o_width;
+				for (int w = 0; w < width; ++w) {
+					int p = row + w * factor;
+					for (int x = 0; x < block_w; ++x) {
+						int rgb = data[p + x];
+						sums[3 * w] += (rgb >> 16) & 0xFF;
+						sums[3 * w + 1] += (rgb >> 8) & 0xFF;
+						sums[3 * w + 2] += rgb & 0xFF;
+					}
+				}
+			}
+			for (int w = 0; w < width; ++w) {
+				n_data[h * width + w] = (sums[3 * w] + count / 2) / count << 16
+						| (sums[3 * w + 1] + count / 2) / count << 8
+						| (sums[3 * w + 2] + count / 2) / count;
+			}
+		}
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+}
@@ -0,0 +1,382 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Headless batch processor applying {@link FilterChain} to BMP files. Every
+ * file passes three stages: reading, filtering and writing, each stage has
+ * its own threads, so reading and writing of some files overlap filtering
+ * of others. Number of files between start of reading and end of writing is
+ * bounded, so at most that many source and resulting images are held in
+ * memory. Filters themselves run on all cores, see {@link TileScheduler}.
+ * No AWT display classes are used, so batch runs without display
+ * 
+ * @author alstein
+ */
+public class FltBatch {
+
+	private static final String USAGE = "usage: FltBatch [-j jobs] [-m images] "
+			+ "-o dir chain input...\n"
+			+ "  chain   comma separated filters with colon separated "
+			+ "arguments, e.g.\n"
+			+ "          gamma:0.8,median:3,scale:640x480\n"
+			+ "  input   BMP file, directory of BMP files or file name "
+			+ "pattern with * and ?\n"
+			+ "  -o dir  directory for results, files keep their names\n"
+			+ "  -j jobs number of images filtered concurrently "
+			+ "(default 2)\n"
+			+ "  -m images max number of images in flight "
+			+ "(default jobs + 2)\n" + "filters:\n" + FilterChain.FILTERS;
+
+	private final ImageFilter _filter;
+	private final File _output_dir;
+	private final ExecutorService _readers;
+	private final ExecutorService _workers;
+	private final ExecutorService _writers;
+	// permits for files in flight
+	private final Semaphore _in_flight;
+
+	private CountDownLatch _done;
+	private final AtomicInteger _failed = new AtomicInteger();
+	private final AtomicLong _pixels = new AtomicLong();
+
+	/**
+	 * Processing of one file, resubmitted to executor of next stage after
+	 * every stage
+	 */
+	private class Job implements Runnable {
+
+		private static final int READ = 0;
+		private static final int FILTER = 1;
+		private static final int WRITE = 2;
+
+		private final File _input;
+		private final File _output;
+		private int _stage = READ;
+		private BufferedImage _img;
+		private int _width;
+		private int _height;
+		// durations of stages in nanoseconds
+		private final long _times[] = new long[3];
+
+		/**
+		 * Constructor
+		 * 
+		 * @param input
+		 *            source file
+		 * @param output
+		 *            result file
+		 */
+		public Job(File input, File output) {
+			_input = input;
+			_output = output;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				switch (_stage) {
+				case READ:
+					_img = BmpImage.readBmpImage(_input);
+					_width = _img.getWidth();
+					_height = _img.getHeight();
+					_pixels.addAndGet((long) _width * _height);
+					break;
+				case FILTER:
+					_img = _filter.apply(_img);
+					break;
+				default:
+					BmpImage.writeBmpImage(_img, _output);
+				}
+			} catch (Exception e) {
+				finish("failed: " + e);
+				return;
+			} catch (OutOfMemoryError e) {
+				_img = null;
+				finish("failed: out of memory");
+				return;
+			}
+			_times[_stage] = System.nanoTime() - start;
+
+			++_stage;
+			if (_stage == FILTER) {
+				_workers.execute(this);
+			} else if (_stage == WRITE) {
+				_writers.execute(this);
+			} else {
+				finish(String.format("%5dx%-5d read %7.1f ms  filter %8.1f ms"
+						+ "  write %7.1f ms", _width, _height,
+						_times[READ] / 1e6, _times[FILTER] / 1e6,
+						_times[WRITE] / 1e6));
+			}
+		}
+
+		/**
+		 * Reports file and releases its slot
+		 * 
+		 * @param message
+		 *            report
+		 */
+		private void finish(String message) {
+			if (_stage != WRITE + 1) {
+				_failed.incrementAndGet();
+			}
+			_img = null;
+			System.out.println(_input.getPath() + ": " + message);
+			_in_flight.release();
+			_done.countDown();
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param filter
+	 *            filter applied to every file
+	 * @param output_dir
+	 *            directory for results
+	 * @param jobs
+	 *            number of images filtered concurrently
+	 * @param images
+	 *            max number of images in flight, not less than jobs
+	 */
+	public FltBatch(ImageFilter filter, File output_dir, int jobs, int images) {
+		if (jobs < 1 || images < jobs) {
+			throw new IllegalArgumentException("invalid number of jobs");
+		}
+		_filter = filter;
+		_output_dir = output_dir;
+		_readers = Executors.newSingleThreadExecutor();
+		_workers = Executors.newFixedThreadPool(jobs);
+		_writers = Executors.newSingleThreadExecutor();
+		_in_flight = new Semaphore(images);
+	}
+
+	/**
+	 * Processes files and prints report line per file and summary
+	 * 
+	 * @param files
+	 *            source files
+	 * @return number of failed files
+	 * @throws InterruptedException
+	 */
+	public int process(List<File> files) throws InterruptedException {
+		_done = new CountDownLatch(files.size());
+		_failed.set(0);
+		_pixels.set(0);
+		long start = System.nanoTime();
+		for (File file : files) {
+			File output = new File(_output_dir, file.getName());
+			if (isSameFile(output, file)) {
+				System.out.println(file.getPath()
+						+ ": failed: result would overwrite source");
+				_failed.incrementAndGet();
+				_done.countDown();
+				continue;
+			}
+			_in_flight.acquire();
+			_readers.execute(new Job(file, output));
+		}
+		_done.await();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int processed = files.size() - _failed.get();
+		System.out.println(String.format("%d file(s) processed, %d failed "
+				+ "in %.2f s: %.2f files/s, %.1f Mpixels/s", processed,
+				_failed.get(), seconds, processed / seconds, _pixels.get()
+						/ 1e6 / seconds));
+		return _failed.get();
+	}
+
+	/**
+	 * Checks whether two paths denote the same file
+	 * 
+	 * @param a
+	 *            path
+	 * @param b
+	 *            path
+	 * @return true if paths denote the same file, false otherwise
+	 */
+	private static boolean isSameFile(File a, File b) {
+		try {
+			return a.getCanonicalFile().equals(b.getCanonicalFile());
+		} catch (IOException e) {
+			return a.getAbsoluteFile().equals(b.getAbsoluteFile());
+		}
+	}
+
+	/**
+	 * Stops threads of batch
+	 */
+	public void shutdown() {
+		_readers.shutdown();
+		_workers.shutdown();
+		_writers.shutdown();
+	}
+
+	/**
+	 * Lists files given by path: file itself, BMP files of directory or files
+	 * whose names match pattern with * and ? wildcards
+	 * 
+	 * @param path
+	 *            path
+	 * @return files sorted by name
+	 */
+	public static List<File> listFiles(String path) {
+		File file = new File(path);
+		File files[];
+		if (file.isDirectory()) {
+			files = file.listFiles(new FileFilter() {
+
+				@Override
+				public boolean accept(File f) {
+					return f.isFile()
+							&& f.getName().toLowerCase().endsWith(".bmp");
+				}
+			});
+		} else if (file.getName().indexOf('*') >= 0
+				|| file.getName().indexOf('?') >= 0) {
+			File dir = file.getParentFile() != null ? file.getParentFile()
+					: new File(".");
+			final Pattern pattern = getPattern(file.getName());
+			files = dir.listFiles(new FileFilter() {
+
+				@Override
+				public boolean accept(File f) {
+					return f.isFile() && pattern.matcher(f.getName()).matches();
+				}
+			});
+		} else {
+			files = new File[] { file };
+		}
+		if (files == null) {
+			files = new File[0];
+		}
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	/**
+	 * Converts file name pattern with * and ? wildcards to regular expression
+	 * 
+	 * @param glob
+	 *            file name pattern
+	 * @return regular expression
+	 */
+	private static Pattern getPattern(String glob) {
+		StringBuilder regex = new StringBuilder();
+		int literal = 0;
+		for (int i = 0; i < glob.length(); ++i) {
+			char c = glob.charAt(i);
+			if (c == '*' || c == '?') {
+				if (i > literal) {
+					regex.append(Pattern.quote(glob.substring(literal, i)));
+				}
+				regex.append(c == '*' ? ".*" : ".");
+				literal = i + 1;
+			}
+		}
+		if (literal < glob.length()) {
+			regex.append(Pattern.quote(glob.substring(literal)));
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	/**
+	 * Batch entry point
+	 * 
+	 * @param args
+	 *            command line arguments, see usage
+	 */
+	public static void main(String args[]) {
+		System.setProperty("java.awt.headless", "true");
+		int jobs = 2, images = -1;
+		File output_dir = null;
+		int i = 0;
+		try {
+			for (; i < args.length && args[i].startsWith("-"); i += 2) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException("missing value of "
+							+ args[i]);
+				}
+				if (args[i].equals("-j")) {
+					jobs = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-m")) {
+					images = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-o")) {
+					output_dir = new File(args[i + 1]);
+				} else {
+					throw new IllegalArgumentException("unknown option "
+							+ args[i]);
+				}
+			}
+			if (output_dir == null || args.length - i < 2) {
+				throw new IllegalArgumentException("missing arguments");
+			}
+			if (images < 0) {
+				images = jobs + 2;
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		FilterChain chain;
+		try {
+			chain = new FilterChain(args[i]);
+		} catch (IllegalArgumentException e) {
+			System.err.println("invalid chain: " + e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		// file matched by several inputs is processed once
+		Set<File> files = new LinkedHashSet<File>();
+		for (++i; i < args.length; ++i) {
+			for (File file : listFiles(args[i])) {
+				files.add(file.getAbsoluteFile());
+			}
+		}
+		if (!output_dir.isDirectory() && !output_dir.mkdirs()) {
+			System.err.println("cannot create directory " + output_dir);
+			System.exit(2);
+			return;
+		}
+
+		FltBatch batch;
+		try {
+			batch = new FltBatch(chain, output_dir, jobs, images);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+			return;
+		}
+		int failed;
+		try {
+			failed = batch.process(new ArrayList<File>(files));
+		} catch (InterruptedException e) {
+			failed = files.size();
+		} finally {
+			batch.shutdown();
+		}
+		System.exit(failed > 0 ? 1 : 0);
+	}
+}
@@ -1,6 +1,7 @@
 package FIT_8201_Sviridov_Flt;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.FlowLayout;
 import java.awt.Insets;
@@ -12,8 +13,13 @@ import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import javax.swing.AbstractAction;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JFormattedTextField;
@@ -28,6 +34,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JSpinner;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.MatteBorder;
 import javax.swing.event.ChangeEvent;
@@ -48,9 +55,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 			"Zone B");
 	private ImageNavigationPanel _zone_a = new ImageNavigationPanel("Zone A",
 			_zone_b);
-	private ImagePanel _zone_c = new ImageResultPanel("Zone C");
+	private ImageResultPanel _zone_c = new ImageResultPanel("Zone C");
+	// runs filters in background
+	private FilterWorker _filter_worker = new FilterWorker();
 	private ImagePanel _zones[] = new ImagePanel[] { _zone_a, _zone_b, _zone_c };
 	private boolean _modified;
+	// radius of filters which need the whole image at once
+	private static final int WHOLE_IMAGE = -1;
 
 	/**
 	 * Sets application title to "<code>name</code> - App name"
@@ -140,6 +151,10 @@ public class FltFrame extends MainFrame implements FltFrameService {
 			addMenuItem("Edit/Contrast", "Apply contrast correction",
 					KeyEvent.VK_A, "contrast.gif", "onContrast");
 
+			addMenuItem("Edit/Select whole image",
+					"Select the whole image for filtering", KeyEvent.VK_W,
+					"onSelectWholeImage");
+
 			addSubMenu("Help", KeyEvent.VK_H);
 			addMenuItem("Help/About",
 					"View application version and author information",
@@ -225,6 +240,7 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		setFromBtoCBlocked(true);
 		setFromCtoBBlocked(true);
 		setFiltersBlocked(true);
+		_filter_worker.cancel();
 		for (ImagePanel p : _zones) {
 			p.setImage(null);
 		}
@@ -232,6 +248,45 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		setDocumentName(FltSettings.UNTITLED_DOCUMENT);
 	}
 
+	/**
+	 * Returns true if filter may be applied to zone B image, otherwise tells
+	 * user that disk-backed image cannot be filtered at once
+	 * 
+	 * @param radius
+	 *            number of rows around pixel read by filter or
+	 *            <code>WHOLE_IMAGE</code>
+	 * @return true if filter may be applied
+	 */
+	private boolean canApplyFilter(int radius) {
+		if (radius != WHOLE_IMAGE || _zone_b.getTiledImage() == null) {
+			return true;
+		}
+		JOptionPane.showMessageDialog(this,
+				"Filter cannot be applied to image larger than memory",
+				"Applying filter", JOptionPane.ERROR_MESSAGE);
+		return false;
+	}
+
+	/**
+	 * Applies filter to zone B image in background and shows result in zone
+	 * C. Disk-backed image is filtered strip by strip, see
+	 * {@link TiledImage#apply(ImageFilter, int)}
+	 * 
+	 * @param filter
+	 *            filter
+	 * @param radius
+	 *            number of rows around pixel read by filter or
+	 *            <code>WHOLE_IMAGE</code>
+	 */
+	private void applyFilter(ImageFilter filter, int radius) {
+		TiledImage tiled = _zone_b.getTiledImage();
+		if (tiled == null) {
+			_filter_worker.submit(_zone_b.getImage(), filter, _zone_c);
+		} else if (canApplyFilter(radius)) {
+			_filter_worker.submit(tiled, filter, radius, _zone_c);
+		}
+	}
+
 	/**
 	 * Class represents dialog for Floyd-Steinberg dithering
 	 */
@@ -241,7 +296,14 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		private JSpinner r = new JSpinner(new SpinnerNumberModel(8, 2, 256, 1));
 		private JSpinner g = new JSpinner(new SpinnerNumberModel(8, 2, 256, 1));
 		private JSpinner b = new JSpinner(new SpinnerNumberModel(4, 2, 256, 1));
+		private JComboBox<String> kernel = new JComboBox<String>(new String[] {
+				"Floyd-Steinberg", "Jarvis-Judice-Ninke", "Stucki" });
+		private JCheckBox serpentine = new JCheckBox("Serpentine");
 		private JButton ok = new JButton("Close");
+		// kernels in order of kernel combo box items
+		private final ErrorDiffusion _kernels[] = {
+				ErrorDiffusion.FLOYD_STEINBERG,
+				ErrorDiffusion.JARVIS_JUDICE_NINKE, ErrorDiffusion.STUCKI };
 
 		/**
 		 * Calls process and makes dialog visible
@@ -255,17 +317,26 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		 * Applies filter to image
 		 */
 		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getFloydSteinbergDitheredImage(o,
-					(Integer) r.getValue(), (Integer) g.getValue(),
-					(Integer) b.getValue()));
+			final int r_count = (Integer) r.getValue();
+			final int g_count = (Integer) g.getValue();
+			final int b_count = (Integer) b.getValue();
+			final ErrorDiffusion diffusion = _kernels[kernel.getSelectedIndex()];
+			final boolean is_serpentine = serpentine.isSelected();
+			applyFilter(new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return diffusion.apply(o, r_count, g_count, b_count,
+							is_serpentine);
+				}
+			}, WHOLE_IMAGE);
 		}
 
 		/**
 		 * Default constructor
 		 */
 		public FloydSteinbergDitheringDialog() {
-			super(FltFrame.this, "Floyd-Steinberg dithering dialog", true);
+			super(FltFrame.this, "Error diffusion dithering dialog", true);
 			setLocationRelativeTo(FltFrame.this);
 			setResizable(false);
 			setLayout(new FlowLayout(FlowLayout.LEFT, 5, 0));
@@ -276,6 +347,8 @@ public class FltFrame extends MainFrame implements FltFrameService {
 			add(g);
 			add(new JLabel("Blue:"));
 			add(b);
+			add(kernel);
+			add(serpentine);
 			add(ok);
 
 			ChangeListener cl = new ChangeListener() {
@@ -298,6 +371,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 				s.addChangeListener(cl);
 			}
 
+			ActionListener al = new ActionListener() {
+
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					process();
+				}
+			};
+			kernel.addActionListener(al);
+			serpentine.addActionListener(al);
+
 			ok.addActionListener(new ActionListener() {
 
 				@Override
@@ -317,7 +400,9 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onFloydSteinbergDithering() {
-		_floyd_steinberg_dialog.showDialog();
+		if (canApplyFilter(WHOLE_IMAGE)) {
+			_floyd_steinberg_dialog.showDialog();
+		}
 	}
 
 	/**
@@ -325,8 +410,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onDoubleScale() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getDoubleScaleImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getDoubleScaleImage(o);
+			}
+		}, WHOLE_IMAGE);
 	}
 
 	/**
@@ -334,8 +424,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onOrderedDithering() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getOrderedDitherImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getOrderedDitherImage(o);
+			}
+		}, 0);
 	}
 
 	/**
@@ -343,10 +438,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * button on toolbar
 	 */
 	public void onAquarelle() {
-		BufferedImage o = _zone_b.getImage();
-		BufferedImage csi = Filters.getColorSmoothedImage(o, 5);
-		BufferedImage si = Filters.getSharpen5Image(csi);
-		_zone_c.setImage(si);
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getAquarelleImage(o);
+			}
+		}, 4);
 	}
 
 	/**
@@ -360,19 +458,99 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		protected JSlider slider;
 		protected JSpinner spinner;
 		protected JButton ok = new JButton("Close");
+		// runs full resolution pass when user pauses adjusting
+		private Timer _debounce_timer;
+		// true if zone C shows result computed on proxy image
+		private boolean _proxy_shown;
 
 		/**
-		 * Calls process and makes dialog visible
+		 * Applies filter to full resolution image and makes dialog visible
 		 */
 		public void showDialog() {
-			process();
+			processFull();
 			setVisible(true);
 		}
 
 		/**
-		 * Method to be overriden with actual action. Does nothing.
+		 * Method to be overriden with actual filter for current value.
+		 * Returns null, i.e. does nothing.
+		 * 
+		 * @return filter or null
+		 */
+		protected ImageFilter getFilter() {
+			return null;
+		}
+
+		/**
+		 * Returns number of rows around pixel read by filter. Returns 0, i.e.
+		 * filter is point-wise
+		 * 
+		 * @return radius
+		 */
+		protected int getRadius() {
+			return 0;
+		}
+
+		/**
+		 * Applies filter to proxy copy of zone B image reduced to size of zone
+		 * C and schedules full resolution pass after debounce delay. Proxy is
+		 * used when zone B holds image larger than zone C, e.g. the whole
+		 * image
 		 */
 		public void process() {
+			ImageFilter filter = getFilter();
+			if (filter == null) {
+				return;
+			}
+			int width = Math.max(_zone_c.getWidth(), FltSettings.PANEL_WIDTH);
+			int height = Math.max(_zone_c.getHeight(),
+					FltSettings.PANEL_HEIGHT);
+			TiledImage tiled = _zone_b.getTiledImage();
+			if (tiled != null) {
+				_proxy_shown = _filter_worker.submitProxy(tiled, filter,
+						getRadius(), _zone_c, width, height);
+			} else {
+				_proxy_shown = _filter_worker.submitProxy(_zone_b.getImage(),
+						filter, _zone_c, width, height);
+			}
+			if (_proxy_shown) {
+				_debounce_timer.restart();
+			} else {
+				_debounce_timer.stop();
+			}
+		}
+
+		/**
+		 * Applies filter to full resolution zone B image
+		 */
+		public void processFull() {
+			_debounce_timer.stop();
+			_proxy_shown = false;
+			ImageFilter filter = getFilter();
+			if (filter != null) {
+				applyFilter(filter, getRadius());
+			}
+		}
+
+		/**
+		 * Sets delay after the last change of value before full resolution
+		 * pass is run
+		 * 
+		 * @param delay
+		 *            delay in milliseconds
+		 */
+		public void setDebounceDelay(int delay) {
+			_debounce_timer.setInitialDelay(delay);
+		}
+
+		/**
+		 * Runs pending full resolution pass and hides dialog
+		 */
+		private void close() {
+			if (_proxy_shown) {
+				processFull();
+			}
+			setVisible(false);
 		}
 
 		/**
@@ -405,7 +583,15 @@ public class FltFrame extends MainFrame implements FltFrameService {
 
 				@Override
 				public void actionPerformed(ActionEvent e) {
-					SliderSpinnerDialog.this.setVisible(false);
+					close();
+				}
+			});
+			setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+			addWindowListener(new WindowAdapter() {
+
+				@Override
+				public void windowClosing(WindowEvent e) {
+					close();
 				}
 			});
 			pack();
@@ -427,6 +613,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 			value = init;
 			max_value = max;
 
+			_debounce_timer = new Timer(FltSettings.PROXY_DEBOUNCE_DELAY,
+					new ActionListener() {
+
+						@Override
+						public void actionPerformed(ActionEvent e) {
+							processFull();
+						}
+					});
+			_debounce_timer.setRepeats(false);
+
 			slider = new JSlider(min, max_value, value);
 			spinner = new JSpinner(new SpinnerNumberModel(value, 0, max_value,
 					5));
@@ -457,26 +653,75 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	}
 
 	/**
-	 * Class represents sobel edge detection filter dialog
+	 * Base class for edge detection dialogs. Gradient magnitudes of images
+	 * are kept while images are alive, so changing threshold only takes one
+	 * pass over cached magnitudes
 	 */
-	class SobelDialog extends SliderSpinnerDialog {
+	class EdgeDetectionDialog extends SliderSpinnerDialog {
 
-		private static final long serialVersionUID = -1560130858483233109L;
+		private static final long serialVersionUID = 2637306476409014573L;
+		private final EdgeDetector _detector;
+		// gradient magnitudes of recently filtered images
+		private final Map<BufferedImage, GradientPlane> _planes = Collections
+				.synchronizedMap(new WeakHashMap<BufferedImage, GradientPlane>());
 
 		/**
-		 * Applies filter
+		 * Returns filter for current value
 		 */
 		@Override
-		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getSobelImage(o, value));
+		protected ImageFilter getFilter() {
+			final int threshold = value;
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					GradientPlane plane = _planes.get(o);
+					if (plane == null) {
+						plane = _detector.apply(o);
+						_planes.put(o, plane);
+					}
+					return plane.getThresholdImage(threshold);
+				}
+			};
+		}
+
+		/**
+		 * Returns radius of gradient operators
+		 */
+		@Override
+		protected int getRadius() {
+			return 1;
 		}
 
+		/**
+		 * Constructor
+		 * 
+		 * @param title
+		 *            dialog title
+		 * @param init
+		 *            init threshold
+		 * @param detector
+		 *            gradient operator
+		 */
+		public EdgeDetectionDialog(String title, int init,
+				EdgeDetector detector) {
+			super(title, init, 0, detector.getMaxMagnitude());
+			_detector = detector;
+		}
+	}
+
+	/**
+	 * Class represents sobel edge detection filter dialog
+	 */
+	class SobelDialog extends EdgeDetectionDialog {
+
+		private static final long serialVersionUID = -1560130858483233109L;
+
 		/**
 		 * Default constructor
 		 */
 		public SobelDialog() {
-			super("Sobel threshold dialog", 135, 0, 255 * 6);
+			super("Sobel threshold dialog", 135, EdgeDetector.SOBEL);
 		}
 	}
 
@@ -491,23 +736,17 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	}
 
 	/**
-	 * Class represents Sobel edge detection filter dialog
+	 * Class represents Roberts edge detection filter dialog
 	 */
-	class RobertsDialog extends SliderSpinnerDialog {
+	class RobertsDialog extends EdgeDetectionDialog {
 
 		private static final long serialVersionUID = 8165566545358931694L;
 
-		@Override
-		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getRobertsImage(o, value));
-		}
-
 		/**
 		 * Default constructor
 		 */
 		public RobertsDialog() {
-			super("Roberts threshold dialog", 35, 0, 510);
+			super("Roberts threshold dialog", 35, EdgeDetector.ROBERTS);
 		}
 	}
 
@@ -526,8 +765,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * button on toolbar
 	 */
 	public void onBlur() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getBlurImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getBlurImage(o);
+			}
+		}, 2);
 	}
 
 	/**
@@ -535,8 +779,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onEmboss() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getEmbossImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getEmbossImage(o);
+			}
+		}, 1);
 	}
 
 	/**
@@ -544,8 +793,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onSharpen() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getSharpen3Image(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getSharpen3Image(o);
+			}
+		}, 1);
 	}
 
 	/**
@@ -553,8 +807,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onNegative() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getNegativeImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getNegativeImage(o);
+			}
+		}, 0);
 	}
 
 	/**
@@ -562,8 +821,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * corresponding button on toolbar
 	 */
 	public void onGrayscale() {
-		BufferedImage o = _zone_b.getImage();
-		_zone_c.setImage(Filters.getGreyscaleImage(o));
+		applyFilter(new ImageFilter() {
+
+			@Override
+			public BufferedImage apply(BufferedImage o) {
+				return Filters.getGreyscaleImage(o);
+			}
+		}, 0);
 	}
 
 	/**
@@ -574,10 +838,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		private static final long serialVersionUID = -4718682390193192233L;
 
 		@Override
-		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getGammaCorrectedImage(o,
-					(double) value / 100));
+		protected ImageFilter getFilter() {
+			final LookupTable table = LookupTable
+					.getGammaTable((double) value / 100);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return table.apply(o);
+				}
+			};
 		}
 
 		/**
@@ -606,10 +876,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		private static final long serialVersionUID = -626750246915866360L;
 
 		@Override
-		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getBrightnessCorrectedImage(o,
-					(double) value / 100));
+		protected ImageFilter getFilter() {
+			final LookupTable table = LookupTable
+					.getBrightnessTable((double) value / 100);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return table.apply(o);
+				}
+			};
 		}
 
 		/**
@@ -638,10 +914,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		private static final long serialVersionUID = 2805392208112947969L;
 
 		@Override
-		public void process() {
-			BufferedImage o = _zone_b.getImage();
-			_zone_c.setImage(Filters.getContrastCorrectedImage(o,
-					(double) value / 100));
+		protected ImageFilter getFilter() {
+			final LookupTable table = LookupTable
+					.getContrastTable((double) value / 100);
+			return new ImageFilter() {
+
+				@Override
+				public BufferedImage apply(BufferedImage o) {
+					return table.apply(o);
+				}
+			};
 		}
 
 		/**
@@ -668,6 +950,12 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * chooses Edit -> From C to B
 	 */
 	public void onFromCtoB() {
+		_filter_worker.cancel();
+		TiledImage tiled = _zone_c.getTiledImage();
+		if (tiled != null) {
+			_zone_b.fixateTiledImage(tiled);
+			return;
+		}
 		BufferedImage img = _zone_c.getImage();
 		_zone_b.setImage(img.getSubimage(0, 0, img.getWidth(), img.getHeight()));
 	}
@@ -677,6 +965,12 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	 * chooses Edit -> From B to C
 	 */
 	public void onFromBtoC() {
+		_filter_worker.cancel();
+		TiledImage tiled = _zone_b.getTiledImage();
+		if (tiled != null) {
+			_zone_c.setTiledImage(tiled);
+			return;
+		}
 		BufferedImage img = _zone_b.getImage();
 		_zone_c.setImage(img.getSubimage(0, 0, img.getWidth(), img.getHeight()));
 	}
@@ -690,6 +984,16 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		_zone_a.startSelecting();
 	}
 
+	/**
+	 * Method is called when user chooses select whole image menu item. Zone B
+	 * gets the whole image, disk-backed image is then filtered and saved
+	 * strip by strip
+	 */
+	public void onSelectWholeImage() {
+		_filter_worker.cancel();
+		_zone_a.selectWholeImage();
+	}
+
 	/**
 	 * Method called when user chooses "New" in menu or on toolbar. Asks user to
 	 * save current document (if needed) and sets application to new document
@@ -819,7 +1123,13 @@ public class FltFrame extends MainFrame implements FltFrameService {
 			if (file == null) {
 				return;
 			}
-			_zone_a.setImage(BmpImage.readBmpImage(file));
+			Dimension size = BmpImage.readBmpSize(file);
+			if (TiledImage.fitsInHeap(size.width, size.height)) {
+				_zone_a.setImage(BmpImage.readBmpImage(file));
+			} else {
+				_zone_a.setTiledImage(BmpImage.readTiledImage(file));
+			}
+			_filter_worker.cancel();
 			_zone_b.setImage(null);
 			_zone_c.setImage(null);
 			setSelectBlocked(false);
@@ -865,7 +1175,12 @@ public class FltFrame extends MainFrame implements FltFrameService {
 					return;
 				}
 			}
-			BmpImage.writeBmpImage(_zone_c.getImage(), file);
+			TiledImage tiled = _zone_c.getTiledImage();
+			if (tiled != null) {
+				BmpImage.writeBmpImage(tiled, file);
+			} else {
+				BmpImage.writeBmpImage(_zone_c.getImage(), file);
+			}
 			setDocumentName(file.getName());
 			setModified(false);
 		} catch (Exception e) {
@@ -899,6 +1214,7 @@ public class FltFrame extends MainFrame implements FltFrameService {
 		JMenuBar menu_bar = getJMenuBar();
 		JMenu edit = (JMenu) menu_bar.getComponent(1);
 		edit.getMenuComponent(0).setEnabled(!value);
+		edit.getMenuComponent(17).setEnabled(!value);
 		toolBar.getComponent(4).setEnabled(!value);
 	}
 
@@ -951,4 +1267,18 @@ public class FltFrame extends MainFrame implements FltFrameService {
 	public void setModified(boolean value) {
 		_modified = value;
 	}
+
+	@Override
+	public void releaseTiledImage(TiledImage img) {
+		if (img == null || img == _zone_a.getTiledImage()
+				|| img == _zone_b.getTiledImage()
+				|| img == _zone_c.getTiledImage()) {
+			return;
+		}
+		try {
+			img.close();
+		} catch (IOException ex) {
+			System.out.println(ex);
+		}
+	}
 }
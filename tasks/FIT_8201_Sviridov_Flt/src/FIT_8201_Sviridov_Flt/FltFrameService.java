@@ -56,4 +56,12 @@ public interface FltFrameService {
 	 * Returns true if file needs saving after being modified, false otherwise
 	 */
 	public boolean isModified();
+
+	/**
+	 * Closes disk-backed image unless it is still shown in some zone
+	 * 
+	 * @param img
+	 *            image, may be null
+	 */
+	public void releaseTiledImage(TiledImage img);
 }
@@ -21,4 +21,7 @@ public interface FltSettings {
 			PANEL_HEIGHT);
 	public static final Color PANEL_COLOR = Color.white;
 	public static final int PANEL_PADDING = 10;
+	// delay in milliseconds after the last change in filter dialog before
+	// filter is applied to full resolution image
+	public static final int PROXY_DEBOUNCE_DELAY = 300;
 }
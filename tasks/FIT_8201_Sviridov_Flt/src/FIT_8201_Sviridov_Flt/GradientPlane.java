@@ -0,0 +1,103 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates gradient magnitudes of image computed by
+ * {@link EdgeDetector}. Plane is immutable, so it may be kept and
+ * thresholded many times with different thresholds
+ * 
+ * @author alstein
+ */
+public class GradientPlane {
+
+	private final int _width;
+	private final int _height;
+	// type of source image, edge maps are made of the same type
+	private final int _type;
+	// magnitudes row by row
+	private final short _magnitudes[];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param width
+	 *            width
+	 * @param height
+	 *            height
+	 * @param type
+	 *            type of source image, see {@link BufferedImage#getType()}
+	 * @param magnitudes
+	 *            magnitudes row by row
+	 */
+	public GradientPlane(int width, int height, int type,
+			short magnitudes[]) {
+		_width = width;
+		_height = height;
+		_type = type;
+		_magnitudes = magnitudes;
+	}
+
+	/**
+	 * Returns width
+	 * 
+	 * @return width
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns height
+	 * 
+	 * @return height
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Returns magnitude of gradient at pixel
+	 * 
+	 * @param x
+	 *            x coordinate
+	 * @param y
+	 *            y coordinate
+	 * @return magnitude
+	 */
+	public int getMagnitude(int x, int y) {
+		return _magnitudes[y * _width + x];
+	}
+
+	/**
+	 * Makes binary edge map: pixels with magnitude greater than threshold are
+	 * black, others are white. Map has type of source image
+	 * 
+	 * @param threshold
+	 *            threshold
+	 * @return edge map
+	 */
+	public BufferedImage getThresholdImage(double threshold) {
+		// magnitudes are integer, so m > threshold iff m > floor(threshold)
+		final int t = (int) Math.max(Math.floor(threshold), -1);
+		BufferedImage n = new BufferedImage(_width, _height, _type);
+		// alpha is kept for images with it, so that map is opaque
+		int mask = Pixels.isDirect(n) ? 0xFFFFFF : 0xFFFFFFFF;
+		final int black_rgb = Color.black.getRGB() & mask;
+		final int white_rgb = Color.white.getRGB() & mask;
+		final int n_data[] = Pixels.getTargetPixels(n);
+		final PixelKernels kernels = PixelKernels.getInstance();
+		TileScheduler.execute(_height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				kernels.threshold(_magnitudes, n_data, first_row * _width,
+						(last_row - first_row) * _width, t, black_rgb,
+						white_rgb);
+			}
+		});
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+}
@@ -0,0 +1,21 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Interface encapsulates filter producing new image of the same size, e.g.
+ * one of {@link Filters} methods
+ * 
+ * @author alstein
+ */
+public interface ImageFilter {
+
+	/**
+	 * Applies filter to image
+	 * 
+	 * @param o
+	 *            original image
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o);
+}
@@ -12,6 +12,7 @@ import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import javax.swing.Timer;
 
 /**
@@ -47,19 +48,27 @@ public class ImageNavigationPanel extends ImagePanel {
 	// panel to view original sized part of the image
 
 	private ImageNavigationViewerPanel _viewer_panel;
+	// disk-backed image used instead of in-memory one, may be null
+	private transient TiledImage _tiled_img;
 
 	/**
 	 * Changes panel state to selecting mode
 	 */
 	public void startSelecting() {
-		Image img = getImage();
-		int img_width = img.getWidth(null);
-		int img_height = img.getHeight(null);
+		int img_width, img_height;
+		if (_tiled_img != null) {
+			img_width = _tiled_img.getWidth();
+			img_height = _tiled_img.getHeight();
+		} else {
+			Image img = getImage();
+			img_width = img.getWidth(null);
+			img_height = img.getHeight(null);
+		}
 		int panel_width = _viewer_panel.getWidth();
 		int panel_height = _viewer_panel.getHeight();
 
 		if (img_width <= panel_width && img_height <= panel_height) {
-			_viewer_panel.setImage(getImage());
+			setViewerImage();
 			_viewer_panel.setImageOffset(0, 0);
 			_viewer_panel.fixateImage();
 			_frame.setSelectBlocked(false);
@@ -69,6 +78,18 @@ public class ImageNavigationPanel extends ImagePanel {
 		_selecting_after_pressed = true;
 	}
 
+	/**
+	 * Passes the whole image to viewer panel instead of selected part
+	 */
+	public void selectWholeImage() {
+		_selecting_after_pressed = false;
+		_selecting = false;
+		_timer.stop();
+		setViewerImage();
+		_viewer_panel.fixateWholeImage();
+		repaint();
+	}
+
 	/**
 	 * Constructor with background title and viewer panel
 	 * 
@@ -156,7 +177,7 @@ public class ImageNavigationPanel extends ImagePanel {
 				if (_selecting_after_pressed == true) {
 					_selecting_after_pressed = false;
 					_selecting = true;
-					_viewer_panel.setImage(getImage());
+					setViewerImage();
 				}
 
 				if (_selecting == false) {
@@ -192,10 +213,69 @@ public class ImageNavigationPanel extends ImagePanel {
 		this.addMouseMotionListener(ma);
 	}
 
+	/**
+	 * Passes image to viewer panel
+	 */
+	private void setViewerImage() {
+		if (_tiled_img != null) {
+			_viewer_panel.setTiledImage(_tiled_img);
+		} else {
+			_viewer_panel.setImage(getImage());
+		}
+	}
+
+	/**
+	 * Returns disk-backed image
+	 * 
+	 * @return disk-backed image or null if in-memory image is used
+	 */
+	public TiledImage getTiledImage() {
+		return _tiled_img;
+	}
+
+	/**
+	 * Sets new disk-backed image. Only its downscaled copy is kept in memory
+	 * for displaying, selected part is read from covered tiles. Image is
+	 * released when it is replaced, see
+	 * {@link FltFrameService#releaseTiledImage(TiledImage)}
+	 * 
+	 * @param img
+	 *            new image
+	 * @throws IOException
+	 */
+	public void setTiledImage(TiledImage img) throws IOException {
+		super.setImage(null);
+		_selecting = false;
+		closeTiledImage(img);
+		_tiled_img = img;
+		if (img == null) {
+			_display_img = null;
+			repaint();
+			return;
+		}
+		updateDisplay(img.getWidth(), img.getHeight(), null);
+	}
+
+	/**
+	 * Releases current disk-backed image unless it is the same as new one
+	 * 
+	 * @param img
+	 *            new image
+	 */
+	private void closeTiledImage(TiledImage img) {
+		if (_tiled_img == null || _tiled_img == img) {
+			return;
+		}
+		TiledImage old = _tiled_img;
+		_tiled_img = null;
+		_frame.releaseTiledImage(old);
+	}
+
 	@Override
 	public void setImage(BufferedImage img) {
 		super.setImage(img);
 		_selecting = false;
+		closeTiledImage(null);
 
 		if (img == null) {
 			_display_img = null;
@@ -203,50 +283,83 @@ public class ImageNavigationPanel extends ImagePanel {
 			return;
 		}
 
-		int panel_width = getWidth(), panel_height = getHeight(), img_width = img
-				.getWidth(), img_height = img.getHeight();
-
-		int scale_opt = Image.SCALE_SMOOTH;
+		try {
+			updateDisplay(img.getWidth(), img.getHeight(), img);
+		} catch (IOException ex) {
+			// in-memory image is never read from disk
+			throw new IllegalStateException(ex);
+		}
+	}
 
-		if (img_width > panel_width && img_height > panel_height) {
+	/**
+	 * Makes scaled image to be displayed and selection size
+	 * 
+	 * @param img_width
+	 *            image width
+	 * @param img_height
+	 *            image height
+	 * @param img
+	 *            in-memory image, null if disk-backed image is used
+	 * @throws IOException
+	 */
+	private void updateDisplay(int img_width, int img_height, BufferedImage img)
+			throws IOException {
+		int panel_width = getWidth(), panel_height = getHeight();
+
+		int display_width, display_height;
+		if (img_width > panel_width
+				&& (img_height <= panel_height || (double) img_width
+						/ panel_width > (double) img_height / panel_height)) {
+			display_width = panel_width;
+			display_height = Math.max(1, img_height * panel_width / img_width);
+		} else if (img_height > panel_height) {
+			display_width = Math.max(1, img_width * panel_height / img_height);
+			display_height = panel_height;
+		} else {
+			display_width = img_width;
+			display_height = img_height;
+		}
 
-			if ((double) img_width / panel_width > (double) img_height
-					/ panel_height) {
-				_display_img = img
-						.getScaledInstance(panel_width, -1, scale_opt);
+		if (display_width == img_width && display_height == img_height) {
+			_display_img = img != null ? img : _tiled_img.getImage(0, 0,
+					img_width, img_height);
+		} else if (img != null) {
+			BufferedImage level = ImagePyramid.getLevel(img, display_width,
+					display_height);
+			if (level.getWidth() == display_width
+					&& level.getHeight() == display_height) {
+				_display_img = level;
 			} else {
-				_display_img = img.getScaledInstance(-1, panel_height,
-						scale_opt);
+				_display_img = Resampler.BICUBIC.resize(level, display_width,
+						display_height);
 			}
+		} else {
+			_display_img = _tiled_img.getScaledImage(display_width,
+					display_height);
+		}
 
-			_selection_width = (int) ((double) panel_width
-					* _display_img.getWidth(null) / img_width + 0.5);
-			_selection_height = (int) ((double) panel_height
-					* _display_img.getHeight(null) / img_height + 0.5);
+		if (img_width > panel_width && img_height > panel_height) {
+			_selection_width = (int) ((double) panel_width * display_width
+					/ img_width + 0.5);
+			_selection_height = (int) ((double) panel_height * display_height
+					/ img_height + 0.5);
 
-			_x_ratio = (double) img_width / _display_img.getWidth(null);
-			_y_ratio = (double) img_height / _display_img.getHeight(null);
+			_x_ratio = (double) img_width / display_width;
+			_y_ratio = (double) img_height / display_height;
 		} else if (img_width > panel_width) {
-			_display_img = img.getScaledInstance(panel_width, -1, scale_opt);
-
-			_selection_height = _display_img.getHeight(null);
-
-			_selection_width = (int) ((double) panel_width
-					* _display_img.getWidth(null) / img_width + 0.5);
-			_x_ratio = (double) img_width / _display_img.getWidth(null);
+			_selection_height = display_height;
+			_selection_width = (int) ((double) panel_width * display_width
+					/ img_width + 0.5);
+			_x_ratio = (double) img_width / display_width;
 			_y_ratio = 1;
 		} else if (img_height > panel_height) {
-			_display_img = img.getScaledInstance(-1, panel_height, scale_opt);
-
-			_selection_width = _display_img.getWidth(null);
-			_selection_height = (int) ((double) panel_height
-					* _display_img.getHeight(null) / img_height + 0.5);
+			_selection_width = display_width;
+			_selection_height = (int) ((double) panel_height * display_height
+					/ img_height + 0.5);
 
 			_x_ratio = 1;
-			_y_ratio = (double) img_height / _display_img.getHeight(null);
-
+			_y_ratio = (double) img_height / display_height;
 		} else {
-			_display_img = img;
 			_selection_height = panel_height;
 			_selection_width = panel_width;
 			_x_ratio = 1;
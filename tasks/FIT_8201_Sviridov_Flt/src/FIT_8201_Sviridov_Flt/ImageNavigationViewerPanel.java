@@ -5,6 +5,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 /**
  * Image navigation viewer panel class
@@ -17,6 +18,10 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 	private int _offset_x;
 	private int _offset_y;
 	private boolean _image_chosen;
+	// disk-backed image being viewed, may be null
+	private transient TiledImage _tiled_img;
+	// part of disk-backed image at current offset
+	private transient BufferedImage _region;
 
 	/**
 	 * Constructor with background title
@@ -53,8 +58,17 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 	 */
 	public void fixateImage() {
 		BufferedImage img = getImage();
-		int width = Math.min(getWidth(), img.getWidth(null) - _offset_x);
-		int height = Math.min(getHeight(), img.getHeight(null) - _offset_y);
+		int offset_x = _offset_x, offset_y = _offset_y;
+		if (_tiled_img != null) {
+			img = _region;
+			offset_x = 0;
+			offset_y = 0;
+		}
+		if (img == null) {
+			return;
+		}
+		int width = Math.min(getWidth(), img.getWidth(null) - offset_x);
+		int height = Math.min(getHeight(), img.getHeight(null) - offset_y);
 
 		BufferedImage n = new BufferedImage(FltSettings.PANEL_WIDTH,
 				FltSettings.PANEL_HEIGHT, BufferedImage.TYPE_INT_RGB);
@@ -62,7 +76,7 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 		g.setColor(Color.white);
 		g.fillRect(0, 0, FltSettings.PANEL_WIDTH, FltSettings.PANEL_HEIGHT);
 
-		copySrcIntoDstAt(img.getSubimage(_offset_x, _offset_y, width, height),
+		copySrcIntoDstAt(img.getSubimage(offset_x, offset_y, width, height),
 				n, 0, 0);
 		setImage(n);
 
@@ -71,12 +85,68 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 		_frame.setFiltersBlocked(false);
 	}
 
+	/**
+	 * Chooses the whole viewed image for filtering. Disk-backed image is not
+	 * copied, only its part at top left corner is read for displaying
+	 */
+	public void fixateWholeImage() {
+		if (_tiled_img == null && getImage() == null) {
+			return;
+		}
+		setImageOffset(0, 0);
+
+		_image_chosen = true;
+		_frame.setFromBtoCBlocked(false);
+		_frame.setFiltersBlocked(false);
+	}
+
+	/**
+	 * Chooses disk-backed image for filtering
+	 * 
+	 * @param img
+	 *            disk-backed image
+	 */
+	public void fixateTiledImage(TiledImage img) {
+		setTiledImage(img);
+		fixateWholeImage();
+	}
+
 	@Override
 	public void setImage(BufferedImage img) {
+		TiledImage old = _tiled_img;
+		_tiled_img = null;
+		_region = null;
 		super.setImage(img);
 		if (img == null) {
 			_frame.setFiltersBlocked(true);
 		}
+		_frame.releaseTiledImage(old);
+	}
+
+	/**
+	 * Sets disk-backed image to be viewed. Only part of image at current
+	 * offset is read
+	 * 
+	 * @param img
+	 *            disk-backed image
+	 */
+	public void setTiledImage(TiledImage img) {
+		TiledImage old = _tiled_img;
+		super.setImage(null);
+		_tiled_img = img;
+		_region = null;
+		if (old != img) {
+			_frame.releaseTiledImage(old);
+		}
+	}
+
+	/**
+	 * Returns disk-backed image being viewed or chosen for filtering
+	 * 
+	 * @return disk-backed image or null if in-memory image is used
+	 */
+	public TiledImage getTiledImage() {
+		return _tiled_img;
 	}
 
 	/**
@@ -91,6 +161,16 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 		_image_chosen = false;
 		_offset_x = x;
 		_offset_y = y;
+		if (_tiled_img != null) {
+			int width = Math.min(getWidth(), _tiled_img.getWidth() - x);
+			int height = Math.min(getHeight(), _tiled_img.getHeight() - y);
+			try {
+				_region = _tiled_img.getImage(x, y, width, height);
+			} catch (IOException ex) {
+				System.out.println(ex);
+				_region = null;
+			}
+		}
 		repaint();
 	}
 
@@ -111,6 +191,8 @@ public class ImageNavigationViewerPanel extends ImagePanel {
 						_offset_x + width, _offset_y + height, null);
 			}
 
+		} else if (_region != null) {
+			g.drawImage(_region, 0, 0, null);
 		} else {
 			drawBackgroundTitle(g);
 		}
@@ -0,0 +1,123 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Class encapsulates mip-map pyramid of image: every level is previous one
+ * halved by 2x2 box filter. Levels are built on demand in row bands on all
+ * available cores and cached while image is alive
+ * 
+ * @author alstein
+ */
+public class ImagePyramid {
+
+	// pyramids of alive images
+	private static final Map<BufferedImage, ImagePyramid> _pyramids = Collections
+			.synchronizedMap(new WeakHashMap<BufferedImage, ImagePyramid>());
+
+	// levels starting from halved image, original image is not referenced
+	// so that cache entry may be collected
+	private final List<BufferedImage> _levels = new ArrayList<BufferedImage>();
+
+	/**
+	 * Returns the smallest level of image pyramid which is not smaller than
+	 * given size in both dimensions, or original image if there is no such
+	 * level
+	 * 
+	 * @param o
+	 *            image
+	 * @param width
+	 *            min width
+	 * @param height
+	 *            min height
+	 * @return pyramid level
+	 */
+	public static BufferedImage getLevel(BufferedImage o, int width,
+			int height) {
+		ImagePyramid pyramid;
+		synchronized (_pyramids) {
+			pyramid = _pyramids.get(o);
+			if (pyramid == null) {
+				pyramid = new ImagePyramid();
+				_pyramids.put(o, pyramid);
+			}
+		}
+		return pyramid.findLevel(o, Math.max(width, 1), Math.max(height, 1));
+	}
+
+	/**
+	 * Returns level of pyramid, building missing levels
+	 * 
+	 * @param o
+	 *            original image
+	 * @param width
+	 *            min width
+	 * @param height
+	 *            min height
+	 * @return pyramid level
+	 */
+	private synchronized BufferedImage findLevel(BufferedImage o, int width,
+			int height) {
+		BufferedImage level = o;
+		for (int k = 0;; ++k) {
+			int n_width = (level.getWidth() + 1) / 2;
+			int n_height = (level.getHeight() + 1) / 2;
+			if (n_width < width || n_height < height
+					|| (level.getWidth() == 1 && level.getHeight() == 1)) {
+				return level;
+			}
+			if (k == _levels.size()) {
+				_levels.add(getHalfImage(level));
+			}
+			level = _levels.get(k);
+		}
+	}
+
+	/**
+	 * Makes image halved by 2x2 box filter. Odd last row and column are
+	 * averaged with themselves
+	 * 
+	 * @param o
+	 *            image
+	 * @return halved image
+	 */
+	public static BufferedImage getHalfImage(BufferedImage o) {
+		final int o_width = o.getWidth(), o_height = o.getHeight();
+		final int width = (o_width + 1) / 2, height = (o_height + 1) / 2;
+		final int data[] = Pixels.getPixels(o);
+		BufferedImage n = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		final int n_data[] = Pixels.getTargetPixels(n);
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int top = 2 * h * o_width;
+					int bottom = Math.min(2 * h + 1, o_height - 1) * o_width;
+					for (int w = 0; w < width; ++w) {
+						int left = 2 * w;
+						int right = Math.min(2 * w + 1, o_width - 1);
+						int a = data[top + left], b = data[top + right];
+						int c = data[bottom + left], d = data[bottom + right];
+						// sum two channels at once in 10-bit lanes
+						int rb = (a & 0xFF00FF) + (b & 0xFF00FF)
+								+ (c & 0xFF00FF) + (d & 0xFF00FF)
+								+ 0x020002;
+						int g = (a & 0xFF00) + (b & 0xFF00) + (c & 0xFF00)
+								+ (d & 0xFF00) + 0x0200;
+						n_data[h * width + w] = (rb >> 2 & 0xFF00FF)
+								| (g >> 2 & 0xFF00);
+					}
+				}
+			}
+		});
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+}
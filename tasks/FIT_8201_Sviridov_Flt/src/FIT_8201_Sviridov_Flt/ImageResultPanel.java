@@ -1,6 +1,8 @@
 package FIT_8201_Sviridov_Flt;
 
+import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 
 /**
  * Zone C panel class
@@ -10,6 +12,11 @@ import java.awt.image.BufferedImage;
 public class ImageResultPanel extends ImagePanel {
 
 	private static final long serialVersionUID = -3234449880812469456L;
+	// scale at which image is drawn, greater than 1 for reduced previews
+	private int _scale = 1;
+	// disk-backed result, only its part at top left corner is drawn, may be
+	// null
+	private transient TiledImage _tiled_img;
 
 	/**
 	 * Constructor with background title
@@ -22,6 +29,9 @@ public class ImageResultPanel extends ImagePanel {
 
 	@Override
 	public void setImage(BufferedImage img) {
+		TiledImage old = _tiled_img;
+		_tiled_img = null;
+		_scale = 1;
 		super.setImage(img);
 		if (img == null) {
 			_frame.setFromCtoBBlocked(true);
@@ -31,5 +41,74 @@ public class ImageResultPanel extends ImagePanel {
 			_frame.setSaveBlocked(false);
 			_frame.setModified(true);
 		}
+		_frame.releaseTiledImage(old);
+	}
+
+	/**
+	 * Sets disk-backed result. Only its part fitting the panel is read for
+	 * displaying
+	 * 
+	 * @param img
+	 *            disk-backed result
+	 */
+	public void setTiledImage(TiledImage img) {
+		TiledImage old = _tiled_img;
+		_tiled_img = img;
+		_scale = 1;
+		int width = Math.min(getWidth(), img.getWidth());
+		int height = Math.min(getHeight(), img.getHeight());
+		try {
+			super.setImage(img.getImage(0, 0, width, height));
+		} catch (IOException ex) {
+			System.out.println(ex);
+			super.setImage(null);
+		}
+		_frame.setFromCtoBBlocked(false);
+		_frame.setSaveBlocked(false);
+		_frame.setModified(true);
+		if (old != img) {
+			_frame.releaseTiledImage(old);
+		}
+	}
+
+	/**
+	 * Returns disk-backed result
+	 * 
+	 * @return disk-backed result or null if in-memory image is shown
+	 */
+	public TiledImage getTiledImage() {
+		return _tiled_img;
+	}
+
+	/**
+	 * Sets preview of result which is being computed. Preview cannot be
+	 * saved or copied to zone B
+	 * 
+	 * @param img
+	 *            preview image
+	 * @param scale
+	 *            scale at which preview is drawn, i.e. ratio of result size
+	 *            to preview size
+	 */
+	public void setPreviewImage(BufferedImage img, int scale) {
+		TiledImage old = _tiled_img;
+		_tiled_img = null;
+		_scale = scale;
+		super.setImage(img);
+		_frame.setFromCtoBBlocked(true);
+		_frame.setSaveBlocked(true);
+		_frame.releaseTiledImage(old);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		BufferedImage img = getImage();
+		if (img == null || _scale == 1) {
+			super.paintComponent(g);
+			return;
+		}
+		clearBackground(g);
+		g.drawImage(img, 0, 0, img.getWidth() * _scale, img.getHeight()
+				* _scale, null);
 	}
 }
@@ -0,0 +1,247 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates point-wise operation compiled into 256-entry lookup
+ * tables (one per channel). Consecutive operations are composed into single
+ * table, so chain of point operations costs one pass over image
+ * 
+ * @author alstein
+ */
+public class LookupTable {
+
+	// number of levels of channel
+	public static final int LEVELS = 256;
+
+	// red channel table
+	private final byte _r[];
+	// green channel table
+	private final byte _g[];
+	// blue channel table
+	private final byte _b[];
+	// channel tables with values shifted to their positions in pixel
+	private final int _r_shifted[];
+	private final int _g_shifted[];
+	private final int _b_shifted[];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param r
+	 *            red channel table
+	 * @param g
+	 *            green channel table
+	 * @param b
+	 *            blue channel table
+	 */
+	public LookupTable(byte r[], byte g[], byte b[]) {
+		if (r.length != LEVELS || g.length != LEVELS || b.length != LEVELS) {
+			throw new IllegalArgumentException("table must have " + LEVELS
+					+ " entries");
+		}
+		_r = r;
+		_g = g;
+		_b = b;
+		_r_shifted = new int[LEVELS];
+		_g_shifted = new int[LEVELS];
+		_b_shifted = new int[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			_r_shifted[v] = (r[v] & 0xFF) << 16;
+			_g_shifted[v] = (g[v] & 0xFF) << 8;
+			_b_shifted[v] = b[v] & 0xFF;
+		}
+	}
+
+	/**
+	 * Constructor with the same table for all channels
+	 * 
+	 * @param table
+	 *            table
+	 */
+	public LookupTable(byte table[]) {
+		this(table, table, table);
+	}
+
+	/**
+	 * Returns identity table
+	 * 
+	 * @return identity table
+	 */
+	public static LookupTable getIdentityTable() {
+		byte t[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			t[v] = (byte) v;
+		}
+		return new LookupTable(t);
+	}
+
+	/**
+	 * Returns negative table
+	 * 
+	 * @return negative table
+	 */
+	public static LookupTable getNegativeTable() {
+		byte t[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			t[v] = (byte) (255 - v);
+		}
+		return new LookupTable(t);
+	}
+
+	/**
+	 * Returns gamma correction table
+	 * 
+	 * @param gamma
+	 *            gamma
+	 * @return gamma correction table
+	 */
+	public static LookupTable getGammaTable(double gamma) {
+		byte t[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			t[v] = (byte) clamp((int) (Math.pow(v / 255.0, gamma) * 255 + 0.5));
+		}
+		return new LookupTable(t);
+	}
+
+	/**
+	 * Returns brightness correction table
+	 * 
+	 * @param brightness
+	 *            value to be added to normalized channel value
+	 * @return brightness correction table
+	 */
+	public static LookupTable getBrightnessTable(double brightness) {
+		byte t[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			t[v] = (byte) clamp((int) (saturation(v / 255.0 + brightness) * 255 + 0.5));
+		}
+		return new LookupTable(t);
+	}
+
+	/**
+	 * Returns contrast correction table
+	 * 
+	 * @param contrast
+	 *            contrast factor
+	 * @return contrast correction table
+	 */
+	public static LookupTable getContrastTable(double contrast) {
+		byte t[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			t[v] = (byte) clamp((int) (saturation((v / 255.0 - 0.5) * contrast
+					+ 0.5) * 255 + 0.5));
+		}
+		return new LookupTable(t);
+	}
+
+	/**
+	 * Composes this table with the next one
+	 * 
+	 * @param next
+	 *            table to be applied after this one
+	 * @return composed table
+	 */
+	public LookupTable then(LookupTable next) {
+		byte r[] = new byte[LEVELS], g[] = new byte[LEVELS], b[] = new byte[LEVELS];
+		for (int v = 0; v < LEVELS; ++v) {
+			r[v] = next._r[_r[v] & 0xFF];
+			g[v] = next._g[_g[v] & 0xFF];
+			b[v] = next._b[_b[v] & 0xFF];
+		}
+		return new LookupTable(r, g, b);
+	}
+
+	/**
+	 * Maps packed RGB pixel
+	 * 
+	 * @param rgb
+	 *            pixel
+	 * @return mapped pixel
+	 */
+	public int map(int rgb) {
+		return ((_r[(rgb >> 16) & 0xFF] & 0xFF) << 16)
+				| ((_g[(rgb >> 8) & 0xFF] & 0xFF) << 8)
+				| (_b[rgb & 0xFF] & 0xFF);
+	}
+
+	/**
+	 * Maps run of packed RGB pixels, see {@link PixelKernels#map}
+	 * 
+	 * @param src
+	 *            source pixels
+	 * @param src_offset
+	 *            offset of first source pixel
+	 * @param dst
+	 *            destination pixels (may be the same as source)
+	 * @param dst_offset
+	 *            offset of first destination pixel
+	 * @param length
+	 *            number of pixels
+	 */
+	public void map(int src[], int src_offset, int dst[], int dst_offset,
+			int length) {
+		PixelKernels.getInstance().map(_r_shifted, _g_shifted, _b_shifted,
+				src, src_offset, dst, dst_offset, length);
+	}
+
+	/**
+	 * Applies table to image
+	 * 
+	 * @param o
+	 *            original image
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o) {
+		int width = o.getWidth(), height = o.getHeight();
+		int data[] = Pixels.getPixels(o);
+
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		int n_data[] = Pixels.getTargetPixels(n);
+
+		apply(data, n_data, width, height);
+
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Applies table to packed pixels
+	 * 
+	 * @param data
+	 *            source pixels
+	 * @param n_data
+	 *            destination pixels (may be the same as source)
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 */
+	public void apply(final int data[], final int n_data[], final int width,
+			int height) {
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				map(data, first_row * width, n_data, first_row * width,
+						(last_row - first_row) * width);
+			}
+		});
+	}
+
+	private static double saturation(double v) {
+		if (v < 0) {
+			return 0;
+		}
+
+		if (v > 1) {
+			return 1;
+		}
+
+		return v;
+	}
+
+	private static int clamp(int v) {
+		return Math.min(255, Math.max(0, v));
+	}
+}
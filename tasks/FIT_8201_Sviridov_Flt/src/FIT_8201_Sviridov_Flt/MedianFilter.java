@@ -0,0 +1,223 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates median filter based on sliding histograms (Huang
+ * algorithm). Every channel has 256-bin histogram of window which is updated
+ * incrementally while window moves along the row, median is tracked together
+ * with number of window samples below it, so cost per pixel depends on window
+ * size linearly
+ * 
+ * @author alstein
+ */
+public class MedianFilter {
+
+	// number of histogram bins
+	private static final int LEVELS = 256;
+
+	/**
+	 * Applies median filter to image. Border pixels not covered by window are
+	 * copied from original image
+	 * 
+	 * @param o
+	 *            original image
+	 * @param size
+	 *            window size (odd)
+	 * @return processed image
+	 */
+	public static BufferedImage apply(BufferedImage o, int size) {
+		int width = o.getWidth(), height = o.getHeight();
+		int data[] = Pixels.getPixels(o);
+
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		int n_data[] = Pixels.getTargetPixels(n);
+
+		apply(data, n_data, width, height, size);
+
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Applies median filter to packed pixels. Border pixels not covered by
+	 * window are copied from source
+	 * 
+	 * @param data
+	 *            source pixels
+	 * @param n_data
+	 *            destination pixels
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param size
+	 *            window size (odd)
+	 */
+	public static void apply(final int data[], final int n_data[],
+			final int width, final int height, final int size) {
+		if (size < 1 || size % 2 == 0) {
+			throw new IllegalArgumentException("window size must be odd");
+		}
+		final int m = size / 2;
+		System.arraycopy(data, 0, n_data, 0, data.length);
+
+		TileScheduler.execute(height, m, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int hist[][] = new int[3][LEVELS];
+				int median[] = new int[3];
+				int below[] = new int[3];
+				int rows[][] = new int[size][];
+				int offsets[] = new int[size];
+				for (int i = 0; i < size; ++i) {
+					rows[i] = data;
+				}
+				for (int h = Math.max(first_row, m); h < Math.min(last_row,
+						height - m); ++h) {
+					if (width - m <= m) {
+						break;
+					}
+					for (int i = 0; i < size; ++i) {
+						offsets[i] = (h - m + i) * width;
+					}
+					filterRow(rows, offsets, n_data, h * width, width, size,
+							hist, median, below);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns median filter working on window of rows
+	 * 
+	 * @param size
+	 *            window size (odd)
+	 * @return row filter
+	 */
+	public static RowFilter getRowFilter(final int size) {
+		if (size < 1 || size % 2 == 0) {
+			throw new IllegalArgumentException("window size must be odd");
+		}
+		return new RowFilter() {
+
+			private final int _hist[][] = new int[3][LEVELS];
+			private final int _median[] = new int[3];
+			private final int _below[] = new int[3];
+			private final int _offsets[] = new int[size];
+
+			@Override
+			public int getRadius() {
+				return size / 2;
+			}
+
+			@Override
+			public void filterRow(int rows[][], int dst[], int width) {
+				int m = size / 2;
+				System.arraycopy(rows[m], 0, dst, 0, width);
+				if (width - m <= m) {
+					return;
+				}
+				MedianFilter.filterRow(rows, _offsets, dst, 0, width, size,
+						_hist, _median, _below);
+			}
+		};
+	}
+
+	/**
+	 * Filters one row of image
+	 * 
+	 * @param rows
+	 *            arrays holding window rows
+	 * @param offsets
+	 *            offsets of window rows in their arrays
+	 * @param dst
+	 *            destination pixels
+	 * @param dst_offset
+	 *            offset of destination row
+	 * @param width
+	 *            image width
+	 * @param size
+	 *            window size
+	 * @param hist
+	 *            histograms of channels
+	 * @param median
+	 *            medians of channels
+	 * @param below
+	 *            numbers of samples below median of channels
+	 */
+	private static void filterRow(int rows[][], int offsets[], int dst[],
+			int dst_offset, int width, int size, int hist[][], int median[],
+			int below[]) {
+		int m = size / 2;
+		// index of median in sorted window
+		int middle = size * size / 2;
+
+		for (int c = 0; c < 3; ++c) {
+			int hc[] = hist[c];
+			for (int l = 0; l < LEVELS; ++l) {
+				hc[l] = 0;
+			}
+		}
+		for (int i = 0; i < size; ++i) {
+			int row[] = rows[i], offset = offsets[i];
+			for (int j = 0; j < size; ++j) {
+				int rgb = row[offset + j];
+				++hist[0][(rgb >> 16) & 0xFF];
+				++hist[1][(rgb >> 8) & 0xFF];
+				++hist[2][rgb & 0xFF];
+			}
+		}
+		for (int c = 0; c < 3; ++c) {
+			int hc[] = hist[c];
+			int med = 0, lt = 0;
+			while (lt + hc[med] <= middle) {
+				lt += hc[med];
+				++med;
+			}
+			median[c] = med;
+			below[c] = lt;
+		}
+		dst[dst_offset + m] = (median[0] << 16) | (median[1] << 8)
+				| median[2];
+
+		for (int w = m + 1; w < width - m; ++w) {
+			int out = w - m - 1, in = w + m;
+			for (int i = 0; i < size; ++i) {
+				int row[] = rows[i], offset = offsets[i];
+				int old_rgb = row[offset + out];
+				int new_rgb = row[offset + in];
+				for (int c = 0; c < 3; ++c) {
+					int shift = 16 - 8 * c;
+					int v_out = (old_rgb >> shift) & 0xFF;
+					int v_in = (new_rgb >> shift) & 0xFF;
+					--hist[c][v_out];
+					++hist[c][v_in];
+					if (v_out < median[c]) {
+						--below[c];
+					}
+					if (v_in < median[c]) {
+						++below[c];
+					}
+				}
+			}
+			for (int c = 0; c < 3; ++c) {
+				int hc[] = hist[c];
+				int med = median[c], lt = below[c];
+				while (lt > middle) {
+					--med;
+					lt -= hc[med];
+				}
+				while (lt + hc[med] <= middle) {
+					lt += hc[med];
+					++med;
+				}
+				median[c] = med;
+				below[c] = lt;
+			}
+			dst[dst_offset + w] = (median[0] << 16) | (median[1] << 8)
+					| median[2];
+		}
+	}
+}
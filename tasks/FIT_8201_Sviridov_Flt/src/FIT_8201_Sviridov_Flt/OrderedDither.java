@@ -0,0 +1,222 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import javax.imageio.ImageIO;
+
+/**
+ * Class encapsulates ordered dithering threshold mask. Mask element of rank
+ * idx among N elements gives threshold idx * 256 / N, and channel value
+ * between two adjacent levels is rounded up if its remainder above the
+ * lower level exceeds threshold of mask element covering the pixel. Mask is
+ * tiled over image, rows are processed in parallel
+ * 
+ * @author alstein
+ */
+public class OrderedDither {
+
+	// 2x2 Bayer matrix all larger ones are built from
+	private static final int BAYER_2[][] = { { 0, 2 }, { 3, 1 } };
+
+	private final int _width;
+	private final int _height;
+	// thresholds in [0, 255] row by row
+	private final int _thresholds[];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param m
+	 *            mask of ranks indexed as m[y][x], ranks must be 0..N-1
+	 *            where N is number of mask elements
+	 */
+	public OrderedDither(int m[][]) {
+		if (m.length == 0 || m[0].length == 0) {
+			throw new IllegalArgumentException("mask is empty");
+		}
+		_height = m.length;
+		_width = m[0].length;
+		int count = _width * _height;
+		_thresholds = new int[count];
+		boolean used[] = new boolean[count];
+		for (int y = 0; y < _height; ++y) {
+			if (m[y].length != _width) {
+				throw new IllegalArgumentException("mask is not rectangular");
+			}
+			for (int x = 0; x < _width; ++x) {
+				int idx = m[y][x];
+				if (idx < 0 || idx >= count || used[idx]) {
+					throw new IllegalArgumentException(
+							"mask elements must be distinct ranks");
+				}
+				used[idx] = true;
+				_thresholds[y * _width + x] = (int) ((long) idx * 256 / count);
+			}
+		}
+	}
+
+	/**
+	 * Makes Bayer mask of size 2^n x 2^n. Every doubling puts scaled 2x2
+	 * matrix over the smaller mask, so the finest pattern changes fastest
+	 * 
+	 * @param n
+	 *            power of two, 1..8
+	 * @return Bayer mask
+	 */
+	public static OrderedDither getBayer(int n) {
+		if (n < 1 || n > 8) {
+			throw new IllegalArgumentException("invalid Bayer matrix order");
+		}
+		int size = 1 << n;
+		int m[][] = new int[size][size];
+		for (int y = 0; y < size; ++y) {
+			for (int x = 0; x < size; ++x) {
+				int idx = 0;
+				for (int bit = 0; bit < n; ++bit) {
+					idx = idx << 2 | BAYER_2[(y >> bit) & 1][(x >> bit) & 1];
+				}
+				m[y][x] = idx;
+			}
+		}
+		return new OrderedDither(m);
+	}
+
+	/**
+	 * Reads mask (e.g. blue noise texture) from image file of any format
+	 * supported by {@link ImageIO}. Pixels are ranked by brightness, ties are
+	 * broken in row order
+	 * 
+	 * @param file
+	 *            image file
+	 * @return mask
+	 * @throws IOException
+	 */
+	public static OrderedDither readMask(File file) throws IOException {
+		BufferedImage img = ImageIO.read(file);
+		if (img == null) {
+			throw new IOException("unsupported mask image format");
+		}
+		final int width = img.getWidth(), height = img.getHeight();
+		final int data[] = img.getRGB(0, 0, width, height, null, 0, width);
+		Integer order[] = new Integer[data.length];
+		for (int p = 0; p < data.length; ++p) {
+			int rgb = data[p];
+			data[p] = 299 * ((rgb >> 16) & 0xFF) + 587 * ((rgb >> 8) & 0xFF)
+					+ 114 * (rgb & 0xFF);
+			order[p] = p;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				int d = Integer.compare(data[a], data[b]);
+				return d != 0 ? d : Integer.compare(a, b);
+			}
+		});
+		int m[][] = new int[height][width];
+		for (int idx = 0; idx < order.length; ++idx) {
+			m[order[idx] / width][order[idx] % width] = idx;
+		}
+		return new OrderedDither(m);
+	}
+
+	/**
+	 * Returns mask width
+	 * 
+	 * @return mask width
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns mask height
+	 * 
+	 * @return mask height
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Applies dithering to image
+	 * 
+	 * @param o
+	 *            image
+	 * @param r_count
+	 *            number of red levels, at least 2
+	 * @param g_count
+	 *            number of green levels, at least 2
+	 * @param b_count
+	 *            number of blue levels, at least 2
+	 * @return processed image
+	 */
+	public BufferedImage apply(BufferedImage o, int r_count, int g_count,
+			int b_count) {
+		int counts[] = { r_count, g_count, b_count };
+		// for every channel value: index of lower level, remainder above it
+		// in [0, 254] and packed values of levels
+		final int bases[][] = new int[3][256];
+		final int remainders[][] = new int[3][256];
+		final int values[][] = new int[3][];
+		for (int k = 0; k < 3; ++k) {
+			int count = counts[k];
+			if (count < 2) {
+				throw new IllegalArgumentException("count must be at least 2");
+			}
+			int shift = 16 - 8 * k;
+			values[k] = new int[count];
+			for (int q = 0; q < count; ++q) {
+				values[k][q] = (int) (255.0 * q / (count - 1) + 0.5) << shift;
+			}
+			for (int v = 0; v < 256; ++v) {
+				int s = v * (count - 1);
+				bases[k][v] = s / 255;
+				remainders[k][v] = s % 255;
+			}
+		}
+
+		final int width = o.getWidth(), height = o.getHeight();
+		final int data[] = Pixels.getPixels(o);
+		BufferedImage n = new BufferedImage(width, height, o.getType());
+		final int n_data[] = Pixels.getTargetPixels(n);
+
+		// mask tiled over image width, one row per mask row
+		final int plane[][] = new int[_height][width];
+		for (int y = 0; y < _height; ++y) {
+			for (int x = 0; x < width; ++x) {
+				plane[y][x] = _thresholds[y * _width + x % _width];
+			}
+		}
+
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int thresholds[] = plane[h % _height];
+					for (int w = 0, p = h * width; w < width; ++w, ++p) {
+						int rgb = data[p];
+						int th = thresholds[w];
+						int result = 0;
+						for (int k = 0; k < 3; ++k) {
+							int v = (rgb >> (16 - 8 * k)) & 0xFF;
+							int q = bases[k][v];
+							if (remainders[k][v] > th) {
+								++q;
+							}
+							result |= values[k][q];
+						}
+						n_data[p] = result;
+					}
+				}
+			}
+		});
+
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+}
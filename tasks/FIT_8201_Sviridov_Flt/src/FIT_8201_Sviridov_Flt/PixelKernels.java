@@ -0,0 +1,269 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class encapsulates innermost loops of filters over runs of packed pixels.
+ * This class implements them in scalar code. If module
+ * <code>jdk.incubator.vector</code> is available at runtime (Java 16+ with
+ * <code>--add-modules jdk.incubator.vector</code>) and vector kernels are
+ * compiled (source directory <code>src-vector</code>), {@link #getInstance()}
+ * returns their implementation processing several pixels per instruction.
+ * Vector kernels are checked against scalar ones once when selected and
+ * give identical results. System property <code>flt.kernels=scalar</code>
+ * disables them
+ * 
+ * @author alstein
+ */
+public class PixelKernels {
+
+	// name of class of vector kernels
+	private static final String VECTOR_KERNELS = "FIT_8201_Sviridov_Flt.VectorPixelKernels";
+	// number of pixels checked when vector kernels are selected
+	private static final int CHECK_LENGTH = 1027;
+
+	private static final PixelKernels _scalar = new PixelKernels();
+	private static final PixelKernels _instance = selectInstance();
+
+	/**
+	 * Returns kernels used by filters: vector ones if available, scalar ones
+	 * otherwise
+	 * 
+	 * @return kernels
+	 */
+	public static PixelKernels getInstance() {
+		return _instance;
+	}
+
+	/**
+	 * Returns scalar kernels
+	 * 
+	 * @return kernels
+	 */
+	public static PixelKernels getScalarInstance() {
+		return _scalar;
+	}
+
+	/**
+	 * Returns name of implementation
+	 * 
+	 * @return name
+	 */
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Loads vector kernels if they are available and agree with scalar ones
+	 * 
+	 * @return selected kernels
+	 */
+	private static PixelKernels selectInstance() {
+		if ("scalar".equals(System.getProperty("flt.kernels"))) {
+			return _scalar;
+		}
+		try {
+			PixelKernels kernels = (PixelKernels) Class
+					.forName(VECTOR_KERNELS).getConstructor().newInstance();
+			return kernels.isEquivalent(_scalar) ? kernels : _scalar;
+		} catch (Exception e) {
+			return _scalar;
+		} catch (LinkageError e) {
+			// vector module is not available
+			return _scalar;
+		}
+	}
+
+	/**
+	 * Checks that kernels give the same results as other ones on pseudo-random
+	 * data, including runs not aligned to vector length
+	 * 
+	 * @param other
+	 *            kernels
+	 * @return true if results are identical
+	 */
+	private boolean isEquivalent(PixelKernels other) {
+		int n = CHECK_LENGTH;
+		Random random = new Random(8201);
+		int src[] = new int[n];
+		short magnitudes[] = new short[n];
+		long acc[] = new long[n], other_acc[] = new long[n];
+		long spread[] = new long[n];
+		int table[] = new int[LookupTable.LEVELS];
+		for (int i = 0; i < n; ++i) {
+			src[i] = random.nextInt() & 0xFFFFFF;
+			magnitudes[i] = (short) random.nextInt(2041);
+			acc[i] = other_acc[i] = random.nextInt(1 << 20);
+			spread[i] = random.nextInt(256);
+		}
+		for (int v = 0; v < table.length; ++v) {
+			table[v] = random.nextInt(256);
+		}
+		int r[] = new int[table.length], g[] = new int[table.length];
+		for (int v = 0; v < table.length; ++v) {
+			r[v] = table[v] << 16;
+			g[v] = table[255 - v] << 8;
+		}
+
+		int a[] = new int[n], b[] = new int[n];
+		for (int offset = 0; offset < 3; ++offset) {
+			int length = n - 2 * offset;
+			greyscale(src, a, offset, length);
+			other.greyscale(src, b, offset, length);
+			if (!Arrays.equals(a, b)) {
+				return false;
+			}
+			negative(src, a, offset, length);
+			other.negative(src, b, offset, length);
+			if (!Arrays.equals(a, b)) {
+				return false;
+			}
+			map(r, g, table, src, offset, a, offset + 1, length - 1);
+			other.map(r, g, table, src, offset, b, offset + 1, length - 1);
+			if (!Arrays.equals(a, b)) {
+				return false;
+			}
+			threshold(magnitudes, a, offset, length, 700, 0, 0xFFFFFF);
+			other.threshold(magnitudes, b, offset, length, 700, 0, 0xFFFFFF);
+			if (!Arrays.equals(a, b)) {
+				return false;
+			}
+			multiplyAdd(acc, spread, -3, spread, 2, spread, 1, offset,
+					offset + length);
+			other.multiplyAdd(other_acc, spread, -3, spread, 2, spread, 1,
+					offset, offset + length);
+			if (!Arrays.equals(acc, other_acc)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts pixels to grayscale with weights (0.299, 0.587, 0.114). Sums
+	 * are computed in doubles in this order and rounded by adding 0.5, as
+	 * filter always did, so some exact ties are rounded down
+	 * 
+	 * @param src
+	 *            source pixels
+	 * @param dst
+	 *            destination pixels
+	 * @param offset
+	 *            offset of first pixel in both arrays
+	 * @param length
+	 *            number of pixels
+	 */
+	public void greyscale(int src[], int dst[], int offset, int length) {
+		for (int p = offset; p < offset + length; ++p) {
+			int rgb = src[p];
+			int y = (int) ((0.299 * ((rgb >> 16) & 0xFF) + 0.587
+					* ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF)) + 0.5);
+			dst[p] = y * 0x010101;
+		}
+	}
+
+	/**
+	 * Inverts all channels of pixels
+	 * 
+	 * @param src
+	 *            source pixels
+	 * @param dst
+	 *            destination pixels
+	 * @param offset
+	 *            offset of first pixel in both arrays
+	 * @param length
+	 *            number of pixels
+	 */
+	public void negative(int src[], int dst[], int offset, int length) {
+		for (int p = offset; p < offset + length; ++p) {
+			dst[p] = ~src[p] & 0xFFFFFF;
+		}
+	}
+
+	/**
+	 * Maps channels of pixels through lookup tables. Tables hold channel
+	 * values already shifted to their positions in packed pixel
+	 * 
+	 * @param r
+	 *            red table, values shifted by 16
+	 * @param g
+	 *            green table, values shifted by 8
+	 * @param b
+	 *            blue table
+	 * @param src
+	 *            source pixels
+	 * @param src_offset
+	 *            offset of first source pixel
+	 * @param dst
+	 *            destination pixels (may be the same as source)
+	 * @param dst_offset
+	 *            offset of first destination pixel
+	 * @param length
+	 *            number of pixels
+	 */
+	public void map(int r[], int g[], int b[], int src[], int src_offset,
+			int dst[], int dst_offset, int length) {
+		for (int i = 0; i < length; ++i) {
+			int rgb = src[src_offset + i];
+			dst[dst_offset + i] = r[(rgb >> 16) & 0xFF]
+					| g[(rgb >> 8) & 0xFF] | b[rgb & 0xFF];
+		}
+	}
+
+	/**
+	 * Makes binary map of magnitudes
+	 * 
+	 * @param src
+	 *            magnitudes
+	 * @param dst
+	 *            destination pixels
+	 * @param offset
+	 *            offset of first element in both arrays
+	 * @param length
+	 *            number of elements
+	 * @param threshold
+	 *            threshold
+	 * @param above
+	 *            pixel for magnitudes greater than threshold
+	 * @param below
+	 *            pixel for other magnitudes
+	 */
+	public void threshold(short src[], int dst[], int offset, int length,
+			int threshold, int above, int below) {
+		for (int p = offset; p < offset + length; ++p) {
+			dst[p] = src[p] > threshold ? above : below;
+		}
+	}
+
+	/**
+	 * Adds three rows multiplied by weights to accumulator:
+	 * <code>acc[w] += ka * a[w] + kb * b[w] + kc * c[w]</code> for w in
+	 * [from, to)
+	 * 
+	 * @param acc
+	 *            accumulator
+	 * @param a
+	 *            first row
+	 * @param ka
+	 *            weight of first row
+	 * @param b
+	 *            second row
+	 * @param kb
+	 *            weight of second row
+	 * @param c
+	 *            third row
+	 * @param kc
+	 *            weight of third row
+	 * @param from
+	 *            first element (inclusive)
+	 * @param to
+	 *            last element (exclusive)
+	 */
+	public void multiplyAdd(long acc[], long a[], long ka, long b[], long kb,
+			long c[], long kc, int from, int to) {
+		for (int w = from; w < to; ++w) {
+			acc[w] += ka * a[w] + kb * b[w] + kc * c[w];
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Class provides access to packed RGB pixels of images. Pixels of
+ * <code>TYPE_INT_RGB</code> images are accessed directly in backing array of
+ * raster, other images fall back to <code>getRGB</code>/<code>setRGB</code>
+ * copies
+ * 
+ * @author alstein
+ */
+public class Pixels {
+
+	/**
+	 * Returns true if packed pixels of image are stored in backing array row
+	 * by row without gaps
+	 * 
+	 * @param img
+	 *            image
+	 * @return true if pixels can be accessed directly
+	 */
+	public static boolean isDirect(BufferedImage img) {
+		if (img.getType() != BufferedImage.TYPE_INT_RGB) {
+			return false;
+		}
+		WritableRaster raster = img.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		SampleModel sm = raster.getSampleModel();
+		if (!(buffer instanceof DataBufferInt)
+				|| !(sm instanceof SinglePixelPackedSampleModel)) {
+			return false;
+		}
+		int stride = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+		return buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+				&& raster.getSampleModelTranslateX() == 0
+				&& raster.getSampleModelTranslateY() == 0
+				&& stride == img.getWidth()
+				&& buffer.getSize() == img.getWidth() * img.getHeight();
+	}
+
+	/**
+	 * Returns packed pixels of image row by row. For direct images backing
+	 * array is returned, so writes to it change image immediately; otherwise
+	 * copy is returned and has to be stored with
+	 * {@link #setPixels(BufferedImage, int[])}
+	 * 
+	 * @param img
+	 *            image
+	 * @return packed pixels
+	 */
+	public static int[] getPixels(BufferedImage img) {
+		if (isDirect(img)) {
+			return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		}
+		int width = img.getWidth(), height = img.getHeight();
+		return img.getRGB(0, 0, width, height, null, 0, width);
+	}
+
+	/**
+	 * Returns array for packed pixels to be written to image row by row. For
+	 * direct images backing array is returned; otherwise new array is
+	 * returned without reading image and has to be stored with
+	 * {@link #setPixels(BufferedImage, int[])}
+	 * 
+	 * @param img
+	 *            image, every pixel of which is going to be overwritten
+	 * @return packed pixels
+	 */
+	public static int[] getTargetPixels(BufferedImage img) {
+		if (isDirect(img)) {
+			return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		}
+		return new int[img.getWidth() * img.getHeight()];
+	}
+
+	/**
+	 * Returns copy of packed pixels of image rectangle row by row
+	 * 
+	 * @param img
+	 *            image
+	 * @param x
+	 *            left column of rectangle
+	 * @param y
+	 *            top row of rectangle
+	 * @param width
+	 *            width of rectangle
+	 * @param height
+	 *            height of rectangle
+	 * @return packed pixels
+	 */
+	public static int[] getPixels(BufferedImage img, int x, int y, int width,
+			int height) {
+		if (!isDirect(img)) {
+			return img.getRGB(x, y, width, height, null, 0, width);
+		}
+		if (x < 0 || y < 0 || x + width > img.getWidth()
+				|| y + height > img.getHeight()) {
+			throw new ArrayIndexOutOfBoundsException(
+					"rectangle is out of image bounds");
+		}
+		int data[] = getPixels(img);
+		int pixels[] = new int[width * height];
+		for (int h = 0; h < height; ++h) {
+			System.arraycopy(data, (y + h) * img.getWidth() + x, pixels, h
+					* width, width);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Stores packed pixels obtained by {@link #getPixels(BufferedImage)} to
+	 * image. Does nothing if pixels are backing array of image
+	 * 
+	 * @param img
+	 *            image
+	 * @param pixels
+	 *            packed pixels
+	 */
+	public static void setPixels(BufferedImage img, int pixels[]) {
+		int width = img.getWidth(), height = img.getHeight();
+		if (!isDirect(img)) {
+			img.setRGB(0, 0, width, height, pixels, 0, width);
+			return;
+		}
+		int data[] = getPixels(img);
+		if (data != pixels) {
+			System.arraycopy(pixels, 0, data, 0, width * height);
+		}
+	}
+}
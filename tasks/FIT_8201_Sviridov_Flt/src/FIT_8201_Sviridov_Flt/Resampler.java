@@ -0,0 +1,269 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Class encapsulates resampling kernel. Image is scaled by arbitrary factors
+ * in two separable passes: rows are resampled horizontally into float
+ * planes, then columns of planes are resampled vertically. Taps and weights
+ * of every destination column and row are computed once per pass. When
+ * image is reduced, kernel is widened by reduction factor, so every source
+ * pixel contributes to result. Pixels outside of image are replaced by the
+ * closest border pixels. Both passes run in row bands on all available
+ * cores
+ * 
+ * @author alstein
+ */
+public class Resampler {
+
+	private static final int BILINEAR_KERNEL = 0;
+	private static final int BICUBIC_KERNEL = 1;
+	private static final int LANCZOS3_KERNEL = 2;
+
+	/**
+	 * Bilinear (triangle) kernel
+	 */
+	public static final Resampler BILINEAR = new Resampler(BILINEAR_KERNEL,
+			1);
+	/**
+	 * Bicubic (Keys, a = -0.5) kernel
+	 */
+	public static final Resampler BICUBIC = new Resampler(BICUBIC_KERNEL, 2);
+	/**
+	 * Lanczos kernel with three lobes
+	 */
+	public static final Resampler LANCZOS3 = new Resampler(LANCZOS3_KERNEL,
+			3);
+
+	private final int _kernel;
+	// kernel radius in source pixels at scale 1
+	private final int _support;
+
+	/**
+	 * Taps and weights of all destination pixels along one axis
+	 */
+	private static class WeightTable {
+
+		// number of taps per destination pixel
+		public final int _taps;
+		// source indices of taps, _taps per destination pixel
+		public final int _indices[];
+		// normalized weights of taps, _taps per destination pixel
+		public final float _weights[];
+
+		/**
+		 * Constructor
+		 * 
+		 * @param taps
+		 *            number of taps per destination pixel
+		 * @param size
+		 *            number of destination pixels
+		 */
+		public WeightTable(int taps, int size) {
+			_taps = taps;
+			_indices = new int[taps * size];
+			_weights = new float[taps * size];
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param kernel
+	 *            kernel id
+	 * @param support
+	 *            kernel radius
+	 */
+	private Resampler(int kernel, int support) {
+		_kernel = kernel;
+		_support = support;
+	}
+
+	/**
+	 * Evaluates kernel
+	 * 
+	 * @param x
+	 *            distance in source pixels at scale 1
+	 * @return kernel value
+	 */
+	private double getKernelValue(double x) {
+		x = Math.abs(x);
+		if (x >= _support) {
+			return 0;
+		}
+		switch (_kernel) {
+		case BILINEAR_KERNEL:
+			return 1 - x;
+		case BICUBIC_KERNEL:
+			if (x < 1) {
+				return (1.5 * x - 2.5) * x * x + 1;
+			}
+			return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+		default:
+			if (x < 1e-8) {
+				return 1;
+			}
+			double px = Math.PI * x;
+			return _support * Math.sin(px) * Math.sin(px / _support)
+					/ (px * px);
+		}
+	}
+
+	/**
+	 * Computes taps and weights of destination pixels along one axis
+	 * 
+	 * @param size
+	 *            number of source pixels along axis
+	 * @param first
+	 *            first source pixel of resampled range
+	 * @param length
+	 *            number of source pixels in resampled range
+	 * @param n_size
+	 *            number of destination pixels
+	 * @return weight table
+	 */
+	private WeightTable getWeightTable(int size, int first, int length,
+			int n_size) {
+		double scale = (double) n_size / length;
+		double filter_scale = Math.max(1, 1 / scale);
+		double radius = _support * filter_scale;
+		int taps = (int) Math.ceil(2 * radius) + 1;
+		WeightTable table = new WeightTable(taps, n_size);
+		double weights[] = new double[taps];
+		for (int i = 0; i < n_size; ++i) {
+			double center = first + (i + 0.5) / scale - 0.5;
+			int left = (int) Math.ceil(center - radius);
+			double sum = 0;
+			for (int t = 0; t < taps; ++t) {
+				weights[t] = getKernelValue((left + t - center) / filter_scale);
+				sum += weights[t];
+			}
+			for (int t = 0; t < taps; ++t) {
+				int p = i * taps + t;
+				table._indices[p] = Math.min(Math.max(left + t, 0), size - 1);
+				table._weights[p] = (float) (sum != 0 ? weights[t] / sum
+						: (t == 0 ? 1 : 0));
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Scales image to given size
+	 * 
+	 * @param o
+	 *            image
+	 * @param width
+	 *            width of result
+	 * @param height
+	 *            height of result
+	 * @return scaled image
+	 */
+	public BufferedImage resize(BufferedImage o, int width, int height) {
+		return resize(o, 0, 0, o.getWidth(), o.getHeight(), width, height);
+	}
+
+	/**
+	 * Scales rectangle of image to given size. Kernel may read pixels around
+	 * rectangle
+	 * 
+	 * @param o
+	 *            image
+	 * @param x
+	 *            left column of rectangle
+	 * @param y
+	 *            top row of rectangle
+	 * @param w
+	 *            width of rectangle
+	 * @param h
+	 *            height of rectangle
+	 * @param width
+	 *            width of result
+	 * @param height
+	 *            height of result
+	 * @return scaled image
+	 */
+	public BufferedImage resize(BufferedImage o, int x, int y, int w, int h,
+			final int width, final int height) {
+		if (w < 1 || h < 1 || width < 1 || height < 1) {
+			throw new IllegalArgumentException("size must be positive");
+		}
+		final int o_width = o.getWidth();
+		final int data[] = Pixels.getPixels(o);
+		final WeightTable cols = getWeightTable(o_width, x, w, width);
+		final WeightTable rows = getWeightTable(o.getHeight(), y, h, height);
+
+		// source rows read by vertical pass
+		int min_row = Integer.MAX_VALUE, max_row = Integer.MIN_VALUE;
+		for (int index : rows._indices) {
+			min_row = Math.min(min_row, index);
+			max_row = Math.max(max_row, index);
+		}
+		final int first_row = min_row;
+		final float planes[][] = new float[3][(max_row - min_row + 1) * width];
+
+		TileScheduler.execute(max_row - min_row + 1, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first, int last) {
+				int taps = cols._taps;
+				for (int r = first; r < last; ++r) {
+					int row = (first_row + r) * o_width;
+					for (int i = 0; i < width; ++i) {
+						float red = 0, green = 0, blue = 0;
+						for (int t = i * taps; t < (i + 1) * taps; ++t) {
+							int rgb = data[row + cols._indices[t]];
+							float weight = cols._weights[t];
+							red += weight * ((rgb >> 16) & 0xFF);
+							green += weight * ((rgb >> 8) & 0xFF);
+							blue += weight * (rgb & 0xFF);
+						}
+						int p = r * width + i;
+						planes[0][p] = red;
+						planes[1][p] = green;
+						planes[2][p] = blue;
+					}
+				}
+			}
+		});
+
+		BufferedImage n = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		final int n_data[] = Pixels.getTargetPixels(n);
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first, int last) {
+				int taps = rows._taps;
+				float sums[] = new float[3 * width];
+				for (int j = first; j < last; ++j) {
+					Arrays.fill(sums, 0);
+					for (int t = j * taps; t < (j + 1) * taps; ++t) {
+						float weight = rows._weights[t];
+						if (weight == 0) {
+							continue;
+						}
+						int row = (rows._indices[t] - first_row) * width;
+						for (int k = 0; k < 3; ++k) {
+							float plane[] = planes[k];
+							for (int i = 0; i < width; ++i) {
+								sums[k * width + i] += weight * plane[row + i];
+							}
+						}
+					}
+					for (int i = 0; i < width; ++i) {
+						int rgb = 0;
+						for (int k = 0; k < 3; ++k) {
+							int v = (int) (sums[k * width + i] + 0.5f);
+							rgb = rgb << 8 | Math.min(Math.max(v, 0), 255);
+						}
+						n_data[j * width + i] = rgb;
+					}
+				}
+			}
+		});
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+}
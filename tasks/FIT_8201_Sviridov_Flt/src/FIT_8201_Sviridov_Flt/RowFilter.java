@@ -0,0 +1,32 @@
+package FIT_8201_Sviridov_Flt;
+
+/**
+ * Interface encapsulates neighbourhood operation computing one image row from
+ * window of source rows. Implementations may keep scratch buffers, so one
+ * instance must not be shared between threads
+ * 
+ * @author alstein
+ */
+public interface RowFilter {
+
+	/**
+	 * Returns number of source rows above and below the row needed by filter
+	 * 
+	 * @return filter radius
+	 */
+	public int getRadius();
+
+	/**
+	 * Filters row of packed pixels. Pixels not covered by kernel horizontally
+	 * are copied from central source row
+	 * 
+	 * @param rows
+	 *            window of <code>2 * radius + 1</code> source rows, central
+	 *            row is the one being filtered
+	 * @param dst
+	 *            destination row
+	 * @param width
+	 *            row width
+	 */
+	public void filterRow(int rows[][], int dst[], int width);
+}
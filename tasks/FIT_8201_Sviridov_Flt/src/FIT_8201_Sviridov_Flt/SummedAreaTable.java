@@ -0,0 +1,427 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Class encapsulates summed-area tables (integral images) of image planes:
+ * element (x, y) holds sum of all values above and to the left of pixel
+ * (x, y), so sum over any rectangle costs four lookups regardless of its
+ * size. Sums are kept in int planes and wrap around, which keeps rectangle
+ * sums exact while they are below 2^32, i.e. for rectangles up to
+ * (2 * {@link #MAX_RADIUS} + 1)^2 pixels. Sums of squares are kept in long
+ * plane. Tables are built in two parallel passes: prefix sums of rows, then
+ * prefix sums of columns
+ * 
+ * @author alstein
+ */
+public class SummedAreaTable {
+
+	// max radius of square window keeping sums of 8-bit values exact
+	public static final int MAX_RADIUS = 2047;
+
+	private final int _width;
+	private final int _height;
+	// row length of tables, tables have extra zero row and column
+	private final int _stride;
+	// tables of channels
+	private final int _sums[][];
+	// table of squares of the first channel, null if not built
+	private final long _squares[];
+
+	/**
+	 * Constructor
+	 * 
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param channels
+	 *            number of channels
+	 * @param squares
+	 *            true if table of squares of the first channel is needed
+	 */
+	private SummedAreaTable(int width, int height, int channels,
+			boolean squares) {
+		_width = width;
+		_height = height;
+		_stride = width + 1;
+		int size = _stride * (height + 1);
+		_sums = new int[channels][size];
+		_squares = squares ? new long[size] : null;
+	}
+
+	/**
+	 * Builds tables of red, green and blue channels of image
+	 * 
+	 * @param o
+	 *            image
+	 * @return tables
+	 */
+	public static SummedAreaTable getColorTable(BufferedImage o) {
+		final int width = o.getWidth(), height = o.getHeight();
+		final int data[] = Pixels.getPixels(o);
+		final SummedAreaTable table = new SummedAreaTable(width, height, 3,
+				false);
+		final int stride = table._stride;
+		final int r[] = table._sums[0], g[] = table._sums[1];
+		final int b[] = table._sums[2];
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int R = 0, G = 0, B = 0;
+					int p = (h + 1) * stride + 1;
+					for (int w = 0, q = h * width; w < width; ++w, ++q, ++p) {
+						int rgb = data[q];
+						R += (rgb >> 16) & 0xFF;
+						G += (rgb >> 8) & 0xFF;
+						B += rgb & 0xFF;
+						r[p] = R;
+						g[p] = G;
+						b[p] = B;
+					}
+				}
+			}
+		});
+		table.sumColumns();
+		return table;
+	}
+
+	/**
+	 * Builds tables of luminance and of its squares, see
+	 * {@link EdgeDetector#getLuminance(BufferedImage)}
+	 * 
+	 * @param o
+	 *            image
+	 * @return tables
+	 */
+	public static SummedAreaTable getLuminanceTable(BufferedImage o) {
+		final int width = o.getWidth(), height = o.getHeight();
+		final byte luminance[] = EdgeDetector.getLuminance(o);
+		final SummedAreaTable table = new SummedAreaTable(width, height, 1,
+				true);
+		final int stride = table._stride;
+		final int sums[] = table._sums[0];
+		final long squares[] = table._squares;
+		TileScheduler.execute(height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int sum = 0;
+					long square = 0;
+					int p = (h + 1) * stride + 1;
+					for (int w = 0, q = h * width; w < width; ++w, ++q, ++p) {
+						int v = luminance[q] & 0xFF;
+						sum += v;
+						square += v * v;
+						sums[p] = sum;
+						squares[p] = square;
+					}
+				}
+			}
+		});
+		table.sumColumns();
+		return table;
+	}
+
+	/**
+	 * Turns prefix sums of rows into summed-area tables, columns are split
+	 * between workers
+	 */
+	private void sumColumns() {
+		TileScheduler.execute(_stride, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_col, int last_col) {
+				for (int k = 0; k < _sums.length; ++k) {
+					int t[] = _sums[k];
+					for (int p = _stride; p < t.length; p += _stride) {
+						for (int x = first_col; x < last_col; ++x) {
+							t[p + x] += t[p - _stride + x];
+						}
+					}
+				}
+				if (_squares != null) {
+					long t[] = _squares;
+					for (int p = _stride; p < t.length; p += _stride) {
+						for (int x = first_col; x < last_col; ++x) {
+							t[p + x] += t[p - _stride + x];
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns image width
+	 * 
+	 * @return width
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns image height
+	 * 
+	 * @return height
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Returns sum of channel over rectangle [x0, x1) x [y0, y1). Rectangle
+	 * must lie within image and have at most (2 * MAX_RADIUS + 1)^2 pixels
+	 * 
+	 * @param channel
+	 *            channel index
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @return sum
+	 */
+	public long getSum(int channel, int x0, int y0, int x1, int y1) {
+		int t[] = _sums[channel];
+		int top = y0 * _stride, bottom = y1 * _stride;
+		int sum = t[bottom + x1] - t[top + x1] - t[bottom + x0] + t[top + x0];
+		return sum & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Returns sum of squares of the first channel over rectangle [x0, x1) x
+	 * [y0, y1), available for luminance tables only
+	 * 
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @return sum of squares
+	 */
+	public long getSquareSum(int x0, int y0, int x1, int y1) {
+		if (_squares == null) {
+			throw new IllegalStateException("table of squares is not built");
+		}
+		long t[] = _squares;
+		int top = y0 * _stride, bottom = y1 * _stride;
+		return t[bottom + x1] - t[top + x1] - t[bottom + x0] + t[top + x0];
+	}
+
+	/**
+	 * Returns mean of channel over rectangle [x0, x1) x [y0, y1)
+	 * 
+	 * @param channel
+	 *            channel index
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @return mean
+	 */
+	public double getMean(int channel, int x0, int y0, int x1, int y1) {
+		return (double) getSum(channel, x0, y0, x1, y1)
+				/ ((long) (x1 - x0) * (y1 - y0));
+	}
+
+	/**
+	 * Returns variance of the first channel over rectangle [x0, x1) x [y0,
+	 * y1), available for luminance tables only
+	 * 
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @return variance
+	 */
+	public double getVariance(int x0, int y0, int x1, int y1) {
+		double area = (double) (x1 - x0) * (y1 - y0);
+		double mean = getSum(0, x0, y0, x1, y1) / area;
+		return Math.max(0, getSquareSum(x0, y0, x1, y1) / area - mean * mean);
+	}
+
+	/**
+	 * Checks window radius
+	 * 
+	 * @param radius
+	 *            radius
+	 */
+	private static void checkRadius(int radius) {
+		if (radius < 0 || radius > MAX_RADIUS) {
+			throw new IllegalArgumentException("radius must be in [0, "
+					+ MAX_RADIUS + "]");
+		}
+	}
+
+	/**
+	 * Makes image blurred with square window of side 2 * radius + 1, window
+	 * is clipped by image borders. Available for color tables only
+	 * 
+	 * @param radius
+	 *            window radius
+	 * @return processed image
+	 */
+	public BufferedImage getBoxBlurImage(final int radius) {
+		checkRadius(radius);
+		if (_sums.length != 3) {
+			throw new IllegalStateException("table has no color channels");
+		}
+		BufferedImage n = new BufferedImage(_width, _height,
+				BufferedImage.TYPE_INT_RGB);
+		final int n_data[] = Pixels.getTargetPixels(n);
+		TileScheduler.execute(_height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				int r[] = _sums[0], g[] = _sums[1], b[] = _sums[2];
+				for (int h = first_row; h < last_row; ++h) {
+					int top = Math.max(h - radius, 0) * _stride;
+					int bottom = Math.min(h + radius + 1, _height) * _stride;
+					int rows = (bottom - top) / _stride;
+					for (int w = 0; w < _width; ++w) {
+						int x0 = Math.max(w - radius, 0);
+						int x1 = Math.min(w + radius + 1, _width);
+						long area = (long) rows * (x1 - x0);
+						int tl = top + x0, tr = top + x1;
+						int bl = bottom + x0, br = bottom + x1;
+						// sums wrap around, so they are read as unsigned
+						long half = area / 2;
+						long R = (r[br] - r[tr] - r[bl] + r[tl]) & 0xFFFFFFFFL;
+						long G = (g[br] - g[tr] - g[bl] + g[tl]) & 0xFFFFFFFFL;
+						long B = (b[br] - b[tr] - b[bl] + b[tl]) & 0xFFFFFFFFL;
+						n_data[h * _width + w] = (int) ((R + half) / area) << 16
+								| (int) ((G + half) / area) << 8
+								| (int) ((B + half) / area);
+					}
+				}
+			}
+		});
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Makes binary image by Sauvola's adaptive threshold: pixel is black if
+	 * its luminance is below m * (1 + k * (s / 128 - 1)), where m and s are
+	 * mean and standard deviation of luminance over square window of side 2
+	 * * radius + 1 clipped by image borders. With k = 0 threshold is local
+	 * mean. Available for luminance tables only
+	 * 
+	 * @param radius
+	 *            window radius
+	 * @param k
+	 *            sensitivity, usually in [0.2, 0.5]
+	 * @return processed image
+	 */
+	public BufferedImage getAdaptiveThresholdImage(final int radius,
+			final double k) {
+		checkRadius(radius);
+		if (_squares == null) {
+			throw new IllegalStateException("table of squares is not built");
+		}
+		final int black_rgb = Color.black.getRGB() & 0xFFFFFF;
+		final int white_rgb = Color.white.getRGB() & 0xFFFFFF;
+		BufferedImage n = new BufferedImage(_width, _height,
+				BufferedImage.TYPE_INT_RGB);
+		final int n_data[] = Pixels.getTargetPixels(n);
+		TileScheduler.execute(_height, 0, new BandOperation() {
+
+			@Override
+			public void processBand(int first_row, int last_row) {
+				for (int h = first_row; h < last_row; ++h) {
+					int y0 = Math.max(h - radius, 0);
+					int y1 = Math.min(h + radius + 1, _height);
+					for (int w = 0; w < _width; ++w) {
+						int x0 = Math.max(w - radius, 0);
+						int x1 = Math.min(w + radius + 1, _width);
+						double area = (double) (x1 - x0) * (y1 - y0);
+						double mean = getSum(0, x0, y0, x1, y1) / area;
+						double variance = getSquareSum(x0, y0, x1, y1) / area
+								- mean * mean;
+						double deviation = Math.sqrt(Math.max(variance, 0));
+						double threshold = mean
+								* (1 + k * (deviation / 128 - 1));
+						long v = getSum(0, w, h, w + 1, h + 1);
+						n_data[h * _width + w] = v < threshold ? black_rgb
+								: white_rgb;
+					}
+				}
+			}
+		});
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Returns radii of box blurs whose successive application approximates
+	 * Gaussian blur, see W. Jarosz, Fast image convolutions (2001)
+	 * 
+	 * @param sigma
+	 *            standard deviation of Gaussian
+	 * @param passes
+	 *            number of box blurs
+	 * @return radii
+	 */
+	public static int[] getGaussianBoxRadii(double sigma, int passes) {
+		if (sigma < 0 || passes < 1) {
+			throw new IllegalArgumentException("invalid Gaussian blur");
+		}
+		double ideal = Math.sqrt(12 * sigma * sigma / passes + 1);
+		int lower = (int) Math.floor(ideal);
+		if (lower % 2 == 0) {
+			--lower;
+		}
+		// number of passes with lower box size, others use lower + 2
+		long m = Math.round((12 * sigma * sigma - passes * lower * lower - 4
+				* passes * lower - 3 * passes)
+				/ (-4.0 * lower - 4));
+		int radii[] = new int[passes];
+		for (int i = 0; i < passes; ++i) {
+			radii[i] = (i < m ? lower : lower + 2) / 2;
+		}
+		return radii;
+	}
+
+	/**
+	 * Makes image blurred with approximate Gaussian: three box blurs of
+	 * radii chosen so that their variance matches Gaussian one
+	 * 
+	 * @param o
+	 *            image
+	 * @param sigma
+	 *            standard deviation of Gaussian
+	 * @return processed image
+	 */
+	public static BufferedImage getGaussianBlurImage(BufferedImage o,
+			double sigma) {
+		BufferedImage n = o;
+		for (int radius : getGaussianBoxRadii(sigma, 3)) {
+			// the first pass runs even with zero radius to copy image
+			if (radius > 0 || n == o) {
+				n = getColorTable(n).getBoxBlurImage(
+						Math.min(radius, MAX_RADIUS));
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,222 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join scheduler splitting image into row bands and running band
+ * operations on all available cores. If cancellation token is bound to
+ * calling thread, it is checked before every band
+ * 
+ * @author alstein
+ */
+public class TileScheduler {
+
+	// minimal number of rows in one band
+	public static final int MIN_BAND_HEIGHT = 16;
+	// number of bands per worker thread, for load balancing
+	public static final int BANDS_PER_THREAD = 4;
+
+	private static final ForkJoinPool _pool = new ForkJoinPool();
+	// cancellation token of job running on thread
+	private static final ThreadLocal<CancellationToken> _token =
+			new ThreadLocal<CancellationToken>();
+
+	/**
+	 * Recursive task splitting row range in halves until band size is reached
+	 */
+	private static class BandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 2208390264462545216L;
+		private final BandOperation _op;
+		private final int _first_row;
+		private final int _last_row;
+		private final int _band_height;
+		private final CancellationToken _token;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param op
+		 *            band operation
+		 * @param first_row
+		 *            first row (inclusive)
+		 * @param last_row
+		 *            last row (exclusive)
+		 * @param band_height
+		 *            max height of band processed without splitting
+		 * @param token
+		 *            cancellation token, may be null
+		 */
+		public BandTask(BandOperation op, int first_row, int last_row,
+				int band_height, CancellationToken token) {
+			_op = op;
+			_first_row = first_row;
+			_last_row = last_row;
+			_band_height = band_height;
+			_token = token;
+		}
+
+		@Override
+		protected void compute() {
+			if (_token != null) {
+				_token.check();
+			}
+			if (_last_row - _first_row <= _band_height) {
+				_op.processBand(_first_row, _last_row);
+				return;
+			}
+			int middle = (_first_row + _last_row) >>> 1;
+			invokeAll(new BandTask(_op, _first_row, middle, _band_height,
+					_token), new BandTask(_op, middle, _last_row, _band_height,
+					_token));
+		}
+	}
+
+	/**
+	 * Task running copy of operation on pool thread with cancellation token
+	 * of submitting thread bound to it
+	 */
+	private static class WorkerTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -6422937137245040716L;
+		private final Runnable _op;
+		private final CancellationToken _job_token;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param op
+		 *            operation
+		 * @param token
+		 *            cancellation token, may be null
+		 */
+		public WorkerTask(Runnable op, CancellationToken token) {
+			_op = op;
+			_job_token = token;
+		}
+
+		@Override
+		protected void compute() {
+			CancellationToken saved = _token.get();
+			setCancellationToken(_job_token);
+			try {
+				_op.run();
+			} finally {
+				setCancellationToken(saved);
+			}
+		}
+	}
+
+	/**
+	 * Binds cancellation token to calling thread. Filters run on the thread
+	 * stop with {@link java.util.concurrent.CancellationException} once token
+	 * is cancelled
+	 * 
+	 * @param token
+	 *            cancellation token, null to unbind
+	 */
+	public static void setCancellationToken(CancellationToken token) {
+		if (token == null) {
+			_token.remove();
+		} else {
+			_token.set(token);
+		}
+	}
+
+	/**
+	 * Checks cancellation token bound to calling thread. Sequential filters
+	 * call it between rows
+	 */
+	public static void checkCancelled() {
+		CancellationToken token = _token.get();
+		if (token != null) {
+			token.check();
+		}
+	}
+
+	/**
+	 * Returns number of worker threads
+	 * 
+	 * @return number of worker threads
+	 */
+	public static int getParallelism() {
+		return _pool.getParallelism();
+	}
+
+	/**
+	 * Computes height of band for given image height and kernel radius. Every
+	 * band reads radius halo rows on each side, so band is kept at least four
+	 * times higher than its halo
+	 * 
+	 * @param height
+	 *            image height
+	 * @param radius
+	 *            kernel radius
+	 * @return band height
+	 */
+	public static int getBandHeight(int height, int radius) {
+		int band_height = height / (getParallelism() * BANDS_PER_THREAD);
+		return Math.max(band_height,
+				Math.max(MIN_BAND_HEIGHT, 8 * Math.max(radius, 0)));
+	}
+
+	/**
+	 * Runs operation over rows <code>[0, height)</code> split into bands.
+	 * Returns when all bands are processed
+	 * 
+	 * @param height
+	 *            number of rows
+	 * @param radius
+	 *            kernel radius (number of halo rows read by band on each
+	 *            side)
+	 * @param op
+	 *            band operation
+	 */
+	public static void execute(int height, int radius, BandOperation op) {
+		if (height <= 0) {
+			return;
+		}
+		CancellationToken token = _token.get();
+		int band_height = getBandHeight(height, radius);
+		if (band_height >= height || getParallelism() == 1) {
+			for (int first = 0; first < height; first += band_height) {
+				if (token != null) {
+					token.check();
+				}
+				op.processBand(first, Math.min(height, first + band_height));
+			}
+			return;
+		}
+		_pool.invoke(new BandTask(op, 0, height, band_height, token));
+	}
+
+	/**
+	 * Runs count copies of operation on pool threads and returns when all of
+	 * them finish. Copies may run concurrently, but may as well run one after
+	 * another, so copy must not wait for work done by other copies unless
+	 * that work is already started. Cancellation token bound to calling
+	 * thread is bound to copies as well
+	 * 
+	 * @param count
+	 *            number of copies
+	 * @param op
+	 *            operation
+	 */
+	public static void executeWorkers(int count, Runnable op) {
+		CancellationToken token = _token.get();
+		final WorkerTask tasks[] = new WorkerTask[count];
+		for (int i = 0; i < count; ++i) {
+			tasks[i] = new WorkerTask(op, token);
+		}
+		_pool.invoke(new RecursiveAction() {
+
+			private static final long serialVersionUID = 5191795616414581375L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+}
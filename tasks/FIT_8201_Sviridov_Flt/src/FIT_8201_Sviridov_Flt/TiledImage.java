@@ -0,0 +1,451 @@
+package FIT_8201_Sviridov_Flt;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class encapsulates disk-backed image split into square tiles. Packed RGB
+ * pixels of tiles are kept in temporary scratch file, recently used tiles
+ * are kept decoded in LRU cache, so only touched tiles take heap. Tiles are
+ * read and written with positional channel operations; scratch file is not
+ * mapped to memory, as mapping would keep it locked on some systems until it
+ * is collected, and it could not be deleted on closing. Methods are
+ * synchronized, image may be read from several threads
+ * 
+ * @author alstein
+ */
+public class TiledImage {
+
+	// width and height of tile
+	public static final int TILE_SIZE = 256;
+	// default number of decoded tiles kept in memory
+	public static final int CACHE_TILES = 256;
+	// number of pixels in tile
+	private static final int TILE_PIXELS = TILE_SIZE * TILE_SIZE;
+	// part of heap which image may take without tiling
+	private static final int HEAP_FRACTION = 4;
+
+	/**
+	 * Decoded tile
+	 */
+	private static class Tile {
+
+		private final int _pixels[] = new int[TILE_PIXELS];
+		// true if tile is changed since it was loaded
+		private boolean _dirty;
+	}
+
+	private final int _width;
+	private final int _height;
+	// number of tile columns
+	private final int _tiles_x;
+	// number of tile rows
+	private final int _tiles_y;
+	private final File _file;
+	private final RandomAccessFile _raf;
+	private final FileChannel _channel;
+	// buffer of one tile for reading and writing scratch file
+	private final ByteBuffer _buffer;
+	private final IntBuffer _buffer_pixels;
+	// decoded tiles by index, in access order
+	private final LinkedHashMap<Integer, Tile> _cache;
+	private final int _cache_tiles;
+
+	/**
+	 * Constructor. Creates black image with default cache size
+	 * 
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @throws IOException
+	 *             if scratch file cannot be created
+	 */
+	public TiledImage(int width, int height) throws IOException {
+		this(width, height, CACHE_TILES);
+	}
+
+	/**
+	 * Constructor. Creates black image
+	 * 
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param cache_tiles
+	 *            number of decoded tiles kept in memory
+	 * @throws IOException
+	 *             if scratch file cannot be created
+	 */
+	public TiledImage(int width, int height, int cache_tiles)
+			throws IOException {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("image size must be positive");
+		}
+		if (cache_tiles < 1) {
+			throw new IllegalArgumentException("cache must hold a tile");
+		}
+		_width = width;
+		_height = height;
+		_tiles_x = (width + TILE_SIZE - 1) / TILE_SIZE;
+		_tiles_y = (height + TILE_SIZE - 1) / TILE_SIZE;
+		long tiles = (long) _tiles_x * _tiles_y;
+		if (tiles > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("image is too large");
+		}
+
+		_file = File.createTempFile("flt", ".tiles");
+		_file.deleteOnExit();
+		_raf = new RandomAccessFile(_file, "rw");
+		_raf.setLength(tiles * TILE_PIXELS * 4);
+		_channel = _raf.getChannel();
+		_buffer = ByteBuffer.allocateDirect(TILE_PIXELS * 4).order(
+				ByteOrder.nativeOrder());
+		_buffer_pixels = _buffer.asIntBuffer();
+
+		_cache = new LinkedHashMap<Integer, Tile>(16, 0.75f, true);
+		_cache_tiles = cache_tiles;
+	}
+
+	/**
+	 * Returns true if image of given size takes small enough part of heap to
+	 * be kept in memory as a whole
+	 * 
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @return true if image fits in heap
+	 */
+	public static boolean fitsInHeap(int width, int height) {
+		return 4L * width * height * HEAP_FRACTION <= Runtime.getRuntime()
+				.maxMemory();
+	}
+
+	/**
+	 * Returns image width
+	 * 
+	 * @return image width
+	 */
+	public int getWidth() {
+		return _width;
+	}
+
+	/**
+	 * Returns image height
+	 * 
+	 * @return image height
+	 */
+	public int getHeight() {
+		return _height;
+	}
+
+	/**
+	 * Returns decoded tile, loading it from scratch file if necessary. Least
+	 * recently used tile is evicted if cache is full
+	 * 
+	 * @param tx
+	 *            tile column
+	 * @param ty
+	 *            tile row
+	 * @return tile
+	 * @throws IOException
+	 */
+	private Tile getTile(int tx, int ty) throws IOException {
+		int index = ty * _tiles_x + tx;
+		Tile tile = _cache.get(index);
+		if (tile != null) {
+			return tile;
+		}
+		if (_cache.size() >= _cache_tiles) {
+			Iterator<Map.Entry<Integer, Tile>> eldest = _cache.entrySet()
+					.iterator();
+			Map.Entry<Integer, Tile> e = eldest.next();
+			storeTile(e.getKey(), e.getValue());
+			eldest.remove();
+		}
+		tile = new Tile();
+		_buffer.clear();
+		BmpImage.readFully(_channel, _buffer, getTilePosition(index));
+		_buffer_pixels.clear();
+		_buffer_pixels.get(tile._pixels);
+		_cache.put(index, tile);
+		return tile;
+	}
+
+	/**
+	 * Writes changed tile back to scratch file
+	 * 
+	 * @param index
+	 *            tile index
+	 * @param tile
+	 *            tile
+	 * @throws IOException
+	 */
+	private void storeTile(int index, Tile tile) throws IOException {
+		if (!tile._dirty) {
+			return;
+		}
+		_buffer_pixels.clear();
+		_buffer_pixels.put(tile._pixels);
+		_buffer.clear();
+		long position = getTilePosition(index);
+		while (_buffer.hasRemaining()) {
+			position += _channel.write(_buffer, position);
+		}
+		tile._dirty = false;
+	}
+
+	/**
+	 * Returns position of tile in scratch file
+	 */
+	private static long getTilePosition(int index) {
+		return (long) index * TILE_PIXELS * 4;
+	}
+
+	/**
+	 * Checks that rectangle lies inside image
+	 */
+	private void checkBounds(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width < 0 || height < 0
+				|| (long) x + width > _width || (long) y + height > _height) {
+			throw new ArrayIndexOutOfBoundsException(
+					"rectangle is out of image bounds");
+		}
+	}
+
+	/**
+	 * Copies packed pixels of image rectangle to array. Only tiles covered by
+	 * rectangle are read
+	 * 
+	 * @param x
+	 *            left column of rectangle
+	 * @param y
+	 *            top row of rectangle
+	 * @param width
+	 *            width of rectangle
+	 * @param height
+	 *            height of rectangle
+	 * @param dst
+	 *            destination array
+	 * @param offset
+	 *            offset of first pixel in destination array
+	 * @param scan
+	 *            distance between rows in destination array
+	 * @throws IOException
+	 */
+	public synchronized void getRGB(int x, int y, int width, int height,
+			int dst[], int offset, int scan) throws IOException {
+		checkBounds(x, y, width, height);
+		copyRect(x, y, width, height, dst, offset, scan, false);
+	}
+
+	/**
+	 * Copies packed pixels from array to image rectangle
+	 * 
+	 * @param x
+	 *            left column of rectangle
+	 * @param y
+	 *            top row of rectangle
+	 * @param width
+	 *            width of rectangle
+	 * @param height
+	 *            height of rectangle
+	 * @param src
+	 *            source array
+	 * @param offset
+	 *            offset of first pixel in source array
+	 * @param scan
+	 *            distance between rows in source array
+	 * @throws IOException
+	 */
+	public synchronized void setRGB(int x, int y, int width, int height,
+			int src[], int offset, int scan) throws IOException {
+		checkBounds(x, y, width, height);
+		copyRect(x, y, width, height, src, offset, scan, true);
+	}
+
+	/**
+	 * Copies pixels between image rectangle and array tile by tile
+	 */
+	private void copyRect(int x, int y, int width, int height, int array[],
+			int offset, int scan, boolean to_image) throws IOException {
+		if (width == 0 || height == 0) {
+			return;
+		}
+		for (int ty = y / TILE_SIZE; ty <= (y + height - 1) / TILE_SIZE; ++ty) {
+			int tile_y = ty * TILE_SIZE;
+			int y0 = Math.max(y, tile_y);
+			int y1 = Math.min(y + height, tile_y + TILE_SIZE);
+			for (int tx = x / TILE_SIZE; tx <= (x + width - 1) / TILE_SIZE; ++tx) {
+				int tile_x = tx * TILE_SIZE;
+				int x0 = Math.max(x, tile_x);
+				int x1 = Math.min(x + width, tile_x + TILE_SIZE);
+				Tile tile = getTile(tx, ty);
+				for (int r = y0; r < y1; ++r) {
+					int t = (r - tile_y) * TILE_SIZE + x0 - tile_x;
+					int a = offset + (r - y) * scan + x0 - x;
+					if (to_image) {
+						System.arraycopy(array, a, tile._pixels, t, x1 - x0);
+					} else {
+						System.arraycopy(tile._pixels, t, array, a, x1 - x0);
+					}
+				}
+				if (to_image) {
+					tile._dirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns copy of image rectangle
+	 * 
+	 * @param x
+	 *            left column of rectangle
+	 * @param y
+	 *            top row of rectangle
+	 * @param width
+	 *            width of rectangle
+	 * @param height
+	 *            height of rectangle
+	 * @return image
+	 * @throws IOException
+	 */
+	public BufferedImage getImage(int x, int y, int width, int height)
+			throws IOException {
+		BmpImage n = new BmpImage(width, height);
+		int n_data[] = Pixels.getTargetPixels(n);
+		getRGB(x, y, width, height, n_data, 0, width);
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Returns image downscaled by averaging pixels falling to the same
+	 * destination pixel. Image is read once, strip by strip
+	 * 
+	 * @param width
+	 *            width of scaled image (not greater than image width)
+	 * @param height
+	 *            height of scaled image (not greater than image height)
+	 * @return scaled image
+	 * @throws IOException
+	 */
+	public BufferedImage getScaledImage(int width, int height)
+			throws IOException {
+		if (width < 1 || height < 1 || width > _width || height > _height) {
+			throw new IllegalArgumentException("image can only be downscaled");
+		}
+		long sums[] = new long[3 * width * height];
+		int counts[] = new int[width * height];
+		int cols[] = new int[_width];
+		for (int x = 0; x < _width; ++x) {
+			cols[x] = (int) ((long) x * width / _width);
+		}
+
+		int strip[] = new int[_width * Math.min(TILE_SIZE, _height)];
+		for (int y0 = 0; y0 < _height; y0 += TILE_SIZE) {
+			int rows = Math.min(TILE_SIZE, _height - y0);
+			getRGB(0, y0, _width, rows, strip, 0, _width);
+			for (int r = 0; r < rows; ++r) {
+				int base = (int) ((long) (y0 + r) * height / _height) * width;
+				for (int x = 0; x < _width; ++x) {
+					int rgb = strip[r * _width + x];
+					int p = base + cols[x];
+					sums[3 * p] += (rgb >> 16) & 0xFF;
+					sums[3 * p + 1] += (rgb >> 8) & 0xFF;
+					sums[3 * p + 2] += rgb & 0xFF;
+					++counts[p];
+				}
+			}
+		}
+
+		BmpImage n = new BmpImage(width, height);
+		int n_data[] = Pixels.getTargetPixels(n);
+		for (int p = 0; p < n_data.length; ++p) {
+			long c = counts[p];
+			n_data[p] = (int) ((sums[3 * p] + c / 2) / c) << 16
+					| (int) ((sums[3 * p + 1] + c / 2) / c) << 8
+					| (int) ((sums[3 * p + 2] + c / 2) / c);
+		}
+		Pixels.setPixels(n, n_data);
+		return n;
+	}
+
+	/**
+	 * Applies filter to image strip by strip. Every strip is one row of tiles
+	 * extended by radius rows above and below, which are dropped from result,
+	 * so filters reading up to radius rows around pixel give the same result
+	 * as on whole image. Strips start at rows divisible by tile size, so
+	 * filters depending on pixel position with period dividing tile size (e.g.
+	 * ordered dither) may be applied with zero radius. Filters depending on
+	 * whole image (e.g. error diffusion) are not supported. Cancellation
+	 * token of {@link TileScheduler} is checked before every strip
+	 * 
+	 * @param filter
+	 *            filter keeping image size
+	 * @param radius
+	 *            number of rows around pixel read by filter
+	 * @return filtered image
+	 * @throws IOException
+	 */
+	public TiledImage apply(ImageFilter filter, int radius) throws IOException {
+		TiledImage n = new TiledImage(_width, _height);
+		try {
+			for (int y0 = 0; y0 < _height; y0 += TILE_SIZE) {
+				TileScheduler.checkCancelled();
+				int y1 = Math.min(_height, y0 + TILE_SIZE);
+				int top = Math.max(0, y0 - radius);
+				int bottom = Math.min(_height, y1 + radius);
+				BufferedImage r = filter.apply(getImage(0, top, _width, bottom
+						- top));
+				if (r.getWidth() != _width || r.getHeight() != bottom - top) {
+					throw new IllegalArgumentException(
+							"filter must keep image size");
+				}
+				n.setRGB(0, y0, _width, y1 - y0, Pixels.getPixels(r),
+						(y0 - top) * _width, _width);
+			}
+		} catch (IOException ex) {
+			n.close();
+			throw ex;
+		} catch (RuntimeException ex) {
+			n.close();
+			throw ex;
+		}
+		return n;
+	}
+
+	/**
+	 * Writes all changed tiles to scratch file
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		for (Map.Entry<Integer, Tile> e : _cache.entrySet()) {
+			storeTile(e.getKey(), e.getValue());
+		}
+	}
+
+	/**
+	 * Releases cache and scratch file. Image cannot be used after closing
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		_cache.clear();
+		_channel.close();
+		_raf.close();
+		_file.delete();
+	}
+}
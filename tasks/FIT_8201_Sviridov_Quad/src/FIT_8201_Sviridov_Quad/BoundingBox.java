@@ -0,0 +1,164 @@
+package FIT_8201_Sviridov_Quad;
+
+/**
+ * Class represents axis-aligned bounding box
+ * 
+ * @author alstein
+ */
+public class BoundingBox {
+
+	/**
+	 * Box containing nothing, union with it returns other box
+	 */
+	public static final BoundingBox EMPTY = new BoundingBox(
+			Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+	private final double minX, minY, minZ;
+	private final double maxX, maxY, maxZ;
+
+	/**
+	 * Ctor
+	 * 
+	 * @param minX
+	 *            min x
+	 * @param minY
+	 *            min y
+	 * @param minZ
+	 *            min z
+	 * @param maxX
+	 *            max x
+	 * @param maxY
+	 *            max y
+	 * @param maxZ
+	 *            max z
+	 */
+	public BoundingBox(double minX, double minY, double minZ, double maxX,
+			double maxY, double maxZ) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * Returns box containing both boxes
+	 * 
+	 * @param other
+	 *            box
+	 * @return union
+	 */
+	public BoundingBox union(BoundingBox other) {
+		return new BoundingBox(Math.min(minX, other.minX), Math.min(minY,
+				other.minY), Math.min(minZ, other.minZ), Math.max(maxX,
+				other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ,
+				other.maxZ));
+	}
+
+	/**
+	 * Returns box containing this box and vertex
+	 * 
+	 * @param v
+	 *            vertex
+	 * @return union
+	 */
+	public BoundingBox union(Vertex v) {
+		double x = v.getX(), y = v.getY(), z = v.getZ();
+		return new BoundingBox(Math.min(minX, x), Math.min(minY, y), Math.min(
+				minZ, z), Math.max(maxX, x), Math.max(maxY, y), Math.max(maxZ,
+				z));
+	}
+
+	/**
+	 * Returns box enlarged by margin in every direction
+	 * 
+	 * @param margin
+	 *            margin
+	 * @return enlarged box
+	 */
+	public BoundingBox expand(double margin) {
+		return new BoundingBox(minX - margin, minY - margin, minZ - margin,
+				maxX + margin, maxY + margin, maxZ + margin);
+	}
+
+	/**
+	 * Returns true if box contains nothing
+	 * 
+	 * @return true if box is empty
+	 */
+	public boolean isEmpty() {
+		return !(minX <= maxX && minY <= maxY && minZ <= maxZ);
+	}
+
+	/**
+	 * Returns surface area, zero for empty box
+	 * 
+	 * @return surface area
+	 */
+	public double surfaceArea() {
+		if (isEmpty()) {
+			return 0;
+		}
+		double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Returns min coordinate along axis
+	 * 
+	 * @param axis
+	 *            0 for x, 1 for y, 2 for z
+	 * @return min coordinate
+	 */
+	public double getMin(int axis) {
+		return axis == 0 ? minX : axis == 1 ? minY : minZ;
+	}
+
+	/**
+	 * Returns max coordinate along axis
+	 * 
+	 * @param axis
+	 *            0 for x, 1 for y, 2 for z
+	 * @return max coordinate
+	 */
+	public double getMax(int axis) {
+		return axis == 0 ? maxX : axis == 1 ? maxY : maxZ;
+	}
+
+	/**
+	 * Returns center coordinate along axis
+	 * 
+	 * @param axis
+	 *            0 for x, 1 for y, 2 for z
+	 * @return center coordinate
+	 */
+	public double getCenter(int axis) {
+		return (getMin(axis) + getMax(axis)) / 2;
+	}
+
+	/**
+	 * Returns size as Rect3D
+	 * 
+	 * @return size
+	 */
+	public Rect3D getRect3D() {
+		if (isEmpty()) {
+			return new Rect3D(0, 0, 0);
+		}
+		return new Rect3D(maxX - minX, maxY - minY, maxZ - minZ);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(60);
+		sb.append("[");
+		sb.append(new Vertex(minX, minY, minZ));
+		sb.append(", ");
+		sb.append(new Vertex(maxX, maxY, maxZ));
+		sb.append("]");
+		return sb.toString();
+	}
+}
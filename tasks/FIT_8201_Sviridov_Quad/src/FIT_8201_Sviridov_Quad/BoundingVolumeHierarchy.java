@@ -0,0 +1,468 @@
+package FIT_8201_Sviridov_Quad;
+
+import FIT_8201_Sviridov_Quad.primitives.Renderable;
+import FIT_8201_Sviridov_Quad.primitives.Triangle;
+import FIT_8201_Sviridov_Quad.primitives.TriangleBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class represents bounding volume hierarchy over renderables. Nodes are
+ * split by surface area heuristic evaluated over bins of centroids and are
+ * flattened in depth-first order into arrays: first child of interior node
+ * follows it, index of second child is stored. Renderables are reordered so
+ * that every leaf refers to continuous range of them. Triangles are also
+ * copied into buffer in the same order, so leaves of mesh are intersected
+ * from continuous arrays without virtual calls. Hierarchy is built
+ * over current positions of renderables and must be rebuilt after they are
+ * transformed
+ * 
+ * @author alstein
+ */
+public class BoundingVolumeHierarchy {
+
+	// number of bins of centroids per axis
+	private static final int BINS = 16;
+	// max number of renderables in leaf
+	private static final int MAX_LEAF_SIZE = 4;
+	// cost of traversal step relative to cost of intersection
+	private static final double TRAVERSAL_COST = 0.5;
+	// relative margin of boxes, boundary hits of primitives are kept
+	private static final double MARGIN = 1e-9;
+	// initial size of traversal stack
+	private static final int STACK_SIZE = 64;
+
+	private final Renderable primitives[];
+	// triangles in order of primitives, other slots are empty
+	private final TriangleBuffer triangles;
+	// min x, y, z and max x, y, z of every node
+	private final double bounds[];
+	// first primitive of leaf or second child of interior node
+	private final int offsets[];
+	// number of primitives of leaf, 0 for interior node
+	private final int counts[];
+	// split axis of interior node
+	private final int axes[];
+	private int nodeCount;
+
+	/**
+	 * Ctor, builds hierarchy
+	 * 
+	 * @param renderables
+	 *            renderables
+	 */
+	public BoundingVolumeHierarchy(Collection<Renderable> renderables) {
+		int n = renderables.size();
+		primitives = renderables.toArray(new Renderable[n]);
+		int capacity = Math.max(2 * n - 1, 1);
+		bounds = new double[6 * capacity];
+		offsets = new int[capacity];
+		counts = new int[capacity];
+		axes = new int[capacity];
+		triangles = new TriangleBuffer(n);
+		if (n == 0) {
+			return;
+		}
+
+		BoundingBox boxes[] = new BoundingBox[n];
+		double centers[] = new double[3 * n];
+		BoundingBox sceneBox = BoundingBox.EMPTY;
+		for (int i = 0; i < n; ++i) {
+			boxes[i] = primitives[i].getBoundingBox();
+			sceneBox = sceneBox.union(boxes[i]);
+		}
+		double margin = MARGIN * (1 + Math.max(sceneBox.getRect3D().getMax(),
+				maxAbs(sceneBox)));
+		for (int i = 0; i < n; ++i) {
+			boxes[i] = boxes[i].expand(margin);
+			for (int axis = 0; axis < 3; ++axis) {
+				centers[3 * i + axis] = boxes[i].getCenter(axis);
+			}
+		}
+		build(boxes, centers, 0, n);
+		for (int i = 0; i < n; ++i) {
+			// subclasses may override intersection
+			if (primitives[i].getClass() == Triangle.class) {
+				triangles.set(i, (Triangle) primitives[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns max absolute coordinate of box
+	 * 
+	 * @param box
+	 *            box
+	 * @return max absolute coordinate
+	 */
+	private static double maxAbs(BoundingBox box) {
+		double max = 0;
+		for (int axis = 0; axis < 3; ++axis) {
+			max = Math.max(max, Math.max(Math.abs(box.getMin(axis)),
+					Math.abs(box.getMax(axis))));
+		}
+		return max;
+	}
+
+	/**
+	 * Builds subtree over range of primitives
+	 * 
+	 * @param boxes
+	 *            boxes of primitives
+	 * @param centers
+	 *            centers of boxes of primitives, 3 per primitive
+	 * @param first
+	 *            first primitive (inclusive)
+	 * @param last
+	 *            last primitive (exclusive)
+	 * @return node index
+	 */
+	private int build(BoundingBox boxes[], double centers[], int first,
+			int last) {
+		int node = nodeCount++;
+		BoundingBox box = BoundingBox.EMPTY;
+		BoundingBox centerBox = BoundingBox.EMPTY;
+		for (int i = first; i < last; ++i) {
+			box = box.union(boxes[i]);
+			centerBox = centerBox.union(new Vertex(centers[3 * i],
+					centers[3 * i + 1], centers[3 * i + 2]));
+		}
+		for (int axis = 0; axis < 3; ++axis) {
+			bounds[6 * node + axis] = box.getMin(axis);
+			bounds[6 * node + 3 + axis] = box.getMax(axis);
+		}
+
+		int count = last - first;
+		int split = count > 1 ? findSplit(boxes, centers, first, last, box,
+				centerBox) : -1;
+		if (split < 0) {
+			offsets[node] = first;
+			counts[node] = count;
+			return node;
+		}
+
+		int axis = split / BINS, bin = split % BINS;
+		double min = centerBox.getMin(axis);
+		double scale = BINS / (centerBox.getMax(axis) - min);
+		// partition primitives by bin of their centers
+		int middle = first;
+		for (int i = first; i < last; ++i) {
+			if (getBin(centers[3 * i + axis], min, scale) <= bin) {
+				swap(boxes, centers, i, middle++);
+			}
+		}
+		if (middle == first || middle == last) {
+			middle = (first + last) / 2;
+		}
+
+		axes[node] = axis;
+		build(boxes, centers, first, middle);
+		offsets[node] = build(boxes, centers, middle, last);
+		return node;
+	}
+
+	/**
+	 * Finds split of range of primitives with the least SAH cost
+	 * 
+	 * @param boxes
+	 *            boxes of primitives
+	 * @param centers
+	 *            centers of boxes of primitives
+	 * @param first
+	 *            first primitive (inclusive)
+	 * @param last
+	 *            last primitive (exclusive)
+	 * @param box
+	 *            box of range
+	 * @param centerBox
+	 *            box of centers of range
+	 * @return axis * BINS + last bin of left part, -1 if leaf is cheaper
+	 */
+	private static int findSplit(BoundingBox boxes[], double centers[],
+			int first, int last, BoundingBox box, BoundingBox centerBox) {
+		int count = last - first;
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestSplit = -1;
+		for (int axis = 0; axis < 3; ++axis) {
+			double min = centerBox.getMin(axis);
+			double extent = centerBox.getMax(axis) - min;
+			if (!(extent > 0)) {
+				continue;
+			}
+			double scale = BINS / extent;
+			BoundingBox binBoxes[] = new BoundingBox[BINS];
+			int binCounts[] = new int[BINS];
+			for (int b = 0; b < BINS; ++b) {
+				binBoxes[b] = BoundingBox.EMPTY;
+			}
+			for (int i = first; i < last; ++i) {
+				int b = getBin(centers[3 * i + axis], min, scale);
+				binBoxes[b] = binBoxes[b].union(boxes[i]);
+				++binCounts[b];
+			}
+			// areas and counts of right parts, swept from the right
+			double rightAreas[] = new double[BINS];
+			int rightCounts[] = new int[BINS];
+			BoundingBox right = BoundingBox.EMPTY;
+			int rightCount = 0;
+			for (int b = BINS - 1; b > 0; --b) {
+				right = right.union(binBoxes[b]);
+				rightCount += binCounts[b];
+				rightAreas[b] = right.surfaceArea();
+				rightCounts[b] = rightCount;
+			}
+			BoundingBox left = BoundingBox.EMPTY;
+			int leftCount = 0;
+			for (int b = 0; b < BINS - 1; ++b) {
+				left = left.union(binBoxes[b]);
+				leftCount += binCounts[b];
+				if (leftCount == 0 || rightCounts[b + 1] == 0) {
+					continue;
+				}
+				double cost = left.surfaceArea() * leftCount
+						+ rightAreas[b + 1] * rightCounts[b + 1];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestSplit = axis * BINS + b;
+				}
+			}
+		}
+		if (bestSplit < 0) {
+			return -1;
+		}
+		double area = box.surfaceArea();
+		double splitCost = area > 0 ? TRAVERSAL_COST + bestCost / area
+				: TRAVERSAL_COST + count;
+		if (count <= MAX_LEAF_SIZE && splitCost >= count) {
+			return -1;
+		}
+		return bestSplit;
+	}
+
+	/**
+	 * Returns bin of center
+	 * 
+	 * @param center
+	 *            center coordinate
+	 * @param min
+	 *            min center coordinate
+	 * @param scale
+	 *            number of bins per unit
+	 * @return bin
+	 */
+	private static int getBin(double center, double min, double scale) {
+		return Math.min((int) ((center - min) * scale), BINS - 1);
+	}
+
+	/**
+	 * Swaps primitives with their boxes and centers
+	 * 
+	 * @param boxes
+	 *            boxes
+	 * @param centers
+	 *            centers
+	 * @param i
+	 *            first index
+	 * @param j
+	 *            second index
+	 */
+	private void swap(BoundingBox boxes[], double centers[], int i, int j) {
+		Renderable primitive = primitives[i];
+		primitives[i] = primitives[j];
+		primitives[j] = primitive;
+		BoundingBox box = boxes[i];
+		boxes[i] = boxes[j];
+		boxes[j] = box;
+		for (int axis = 0; axis < 3; ++axis) {
+			double center = centers[3 * i + axis];
+			centers[3 * i + axis] = centers[3 * j + axis];
+			centers[3 * j + axis] = center;
+		}
+	}
+
+	/**
+	 * Returns number of nodes
+	 * 
+	 * @return number of nodes
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns renderables in order of leaves
+	 * 
+	 * @return renderables
+	 */
+	public List<Renderable> getRenderables() {
+		return Arrays.asList(primitives);
+	}
+
+	/**
+	 * Checks if ray enters node box closer than current hit distance
+	 * 
+	 * @param node
+	 *            node
+	 * @param hit
+	 *            ray and its hit
+	 * @return true if ray intersects box
+	 */
+	private boolean enters(int node, HitRecord hit) {
+		int b = 6 * node;
+		double ox = hit.getOriginX(), oy = hit.getOriginY(), oz = hit
+				.getOriginZ();
+		double ix = hit.getInverseX(), iy = hit.getInverseY(), iz = hit
+				.getInverseZ();
+		double near = 0, far = hit.getDistance();
+		for (int axis = 0; axis < 3; ++axis) {
+			double o = axis == 0 ? ox : axis == 1 ? oy : oz;
+			double inverse = axis == 0 ? ix : axis == 1 ? iy : iz;
+			double t1 = (bounds[b + axis] - o) * inverse;
+			double t2 = (bounds[b + 3 + axis] - o) * inverse;
+			// NaN appears when ray lies in slab plane, it does not narrow
+			if (t1 > t2) {
+				double t = t1;
+				t1 = t2;
+				t2 = t;
+			}
+			if (t1 > near) {
+				near = t1;
+			}
+			if (t2 < far) {
+				far = t2;
+			}
+		}
+		return near <= far;
+	}
+
+	/**
+	 * Finds closest intersection of ray with renderables, nothing is
+	 * allocated
+	 * 
+	 * @param hit
+	 *            ray, its closest hit is recorded into it
+	 * @return true if there is hit
+	 */
+	public boolean intersect(HitRecord hit) {
+		return traverse(hit, null, false);
+	}
+
+	/**
+	 * Checks if any renderable except ignored one intersects ray closer than
+	 * max distance of record, traversal stops at the first such
+	 * intersection, nothing is allocated
+	 * 
+	 * @param hit
+	 *            ray with max distance set, blocking hit is recorded into it
+	 * @param ignored
+	 *            ignored renderable, may be null
+	 * @return true if ray is blocked
+	 */
+	public boolean isOccluded(HitRecord hit, Renderable ignored) {
+		return traverse(hit, ignored, true);
+	}
+
+	/**
+	 * Traverses hierarchy
+	 * 
+	 * @param hit
+	 *            ray and its hit
+	 * @param ignored
+	 *            ignored renderable, may be null
+	 * @param anyHit
+	 *            true to stop at the first hit
+	 * @return true if there is hit
+	 */
+	private boolean traverse(HitRecord hit, Renderable ignored,
+			boolean anyHit) {
+		if (nodeCount == 0) {
+			return false;
+		}
+		boolean found = false;
+		int stack[] = hit.getStack(STACK_SIZE);
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!enters(node, hit)) {
+				continue;
+			}
+			if (counts[node] > 0) {
+				for (int i = offsets[node]; i < offsets[node] + counts[node]; ++i) {
+					if (primitives[i] == ignored) {
+						continue;
+					}
+					if (triangles.contains(i) ? triangles.intersect(i, hit)
+							: primitives[i].intersect(hit)) {
+						if (anyHit) {
+							return true;
+						}
+						found = true;
+					}
+				}
+				continue;
+			}
+			if (top + 2 > stack.length) {
+				stack = hit.getStack(top + 2);
+			}
+			// near child is visited first
+			boolean negative = (axes[node] == 0 ? hit.getInverseX()
+					: axes[node] == 1 ? hit.getInverseY() : hit.getInverseZ()) < 0;
+			if (negative) {
+				stack[top++] = node + 1;
+				stack[top++] = offsets[node];
+			} else {
+				stack[top++] = offsets[node];
+				stack[top++] = node + 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns closest intersection of ray with renderables
+	 * 
+	 * @param ray
+	 *            ray
+	 * @return closest intersection, null if there is no one
+	 */
+	public IntersectionInfo intersect(Ray ray) {
+		HitRecord hit = toHitRecord(ray);
+		intersect(hit);
+		return hit.toIntersectionInfo();
+	}
+
+	/**
+	 * Checks if any renderable except ignored one intersects ray closer than
+	 * given distance
+	 * 
+	 * @param ray
+	 *            ray
+	 * @param maxDistance
+	 *            max distance
+	 * @param ignored
+	 *            ignored renderable, may be null
+	 * @return true if ray is blocked
+	 */
+	public boolean isOccluded(Ray ray, double maxDistance, Renderable ignored) {
+		HitRecord hit = toHitRecord(ray);
+		hit.setMaxDistance(maxDistance);
+		return isOccluded(hit, ignored);
+	}
+
+	/**
+	 * Makes hit record of ray
+	 * 
+	 * @param ray
+	 *            ray
+	 * @return hit record
+	 */
+	private static HitRecord toHitRecord(Ray ray) {
+		Vertex o = ray.getOrigin().normalize();
+		Vector d = ray.getDirection();
+		HitRecord hit = new HitRecord();
+		hit.setRay(o.getX(), o.getY(), o.getZ(), d.getX(), d.getY(), d.getZ());
+		return hit;
+	}
+}
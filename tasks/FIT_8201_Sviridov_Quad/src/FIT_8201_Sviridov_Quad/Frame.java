@@ -14,6 +14,8 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.BorderFactory;
@@ -26,6 +28,7 @@ import javax.swing.JFormattedTextField;
 
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
@@ -355,6 +358,8 @@ public final class Frame extends MainFrame {
                     KeyEvent.VK_S, "obj.gif", "onObjects");
             addMenuItem("Edit/Render", "Start rendering proccess",
                     KeyEvent.VK_R, "render.gif", "onRender");
+            addMenuItem("Edit/Stop rendering", "Stop rendering proccess",
+                    KeyEvent.VK_T, "onStopRender");
             addMenuItem("Edit/Settings", "Show settings dialog", KeyEvent.VK_S,
                     "settings.gif", "onSettings");
 
@@ -496,6 +501,19 @@ public final class Frame extends MainFrame {
 
         scene = new Scene(model);
 
+        // stop rendering is available only while rendering is in progress
+        final JMenuItem stopItem = (JMenuItem) getMenuElement(
+                "Edit/Stop rendering");
+        stopItem.setEnabled(false);
+        scene.addPropertyChangeListener(Scene.RENDERING_PROPERTY,
+                new PropertyChangeListener() {
+
+                    @Override
+                    public void propertyChange(PropertyChangeEvent evt) {
+                        stopItem.setEnabled(scene.isRendering());
+                    }
+                });
+
         JPanel outer1 = new JPanel(new BorderLayout());
         outer1.setBackground(Color.white);
         outer1.add(scene, BorderLayout.CENTER);
@@ -576,6 +594,14 @@ public final class Frame extends MainFrame {
         scene.repaint();
     }
 
+    /**
+     * Method called when user chooses "Stop rendering" in menu. Already
+     * rendered tiles stay visible
+     */
+    public void onStopRender() {
+        scene.cancelRendering();
+    }
+
     /**
      * Method called when user chooses "Load" in menu or on toolbar. Asks user
      * to save current document (if needed), shows dialog to choose file and
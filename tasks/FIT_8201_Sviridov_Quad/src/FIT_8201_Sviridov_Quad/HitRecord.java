@@ -0,0 +1,291 @@
+package FIT_8201_Sviridov_Quad;
+
+import FIT_8201_Sviridov_Quad.primitives.Renderable;
+import java.util.Arrays;
+
+/**
+ * Class represents reusable ray with record of its closest hit. It is used
+ * on the hot path of ray tracing instead of {@link Ray} and
+ * {@link IntersectionInfo}: renderer keeps one record per ray kind and
+ * worker, sets new ray into it and intersection methods write distance,
+ * normal and object of closer hits, so nothing is allocated per ray. Ray
+ * direction is always normalized, so hit distance equals ray parameter t
+ * 
+ * @author alstein
+ */
+public class HitRecord {
+
+	// initial size of traversal stack
+	private static final int STACK_SIZE = 64;
+
+	private double originX, originY, originZ;
+	private double directionX, directionY, directionZ;
+	private double inverseX, inverseY, inverseZ;
+	private double distance;
+	private double normalX, normalY, normalZ;
+	private Renderable object;
+	// traversal stack of BoundingVolumeHierarchy
+	private int stack[] = new int[STACK_SIZE];
+
+	/**
+	 * Sets new ray and clears hit
+	 * 
+	 * @param ox
+	 *            origin x
+	 * @param oy
+	 *            origin y
+	 * @param oz
+	 *            origin z
+	 * @param dx
+	 *            direction x
+	 * @param dy
+	 *            direction y
+	 * @param dz
+	 *            direction z, direction is normalized
+	 */
+	public void setRay(double ox, double oy, double oz, double dx, double dy,
+			double dz) {
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		originX = ox;
+		originY = oy;
+		originZ = oz;
+		directionX = dx / length;
+		directionY = dy / length;
+		directionZ = dz / length;
+		inverseX = 1 / directionX;
+		inverseY = 1 / directionY;
+		inverseZ = 1 / directionZ;
+		distance = Double.POSITIVE_INFINITY;
+		object = null;
+	}
+
+	/**
+	 * Sets max distance of hits, hits at this distance or farther are
+	 * ignored
+	 * 
+	 * @param distance
+	 *            max distance
+	 */
+	public void setMaxDistance(double distance) {
+		this.distance = distance;
+	}
+
+	/**
+	 * Records hit if it is closer than current one
+	 * 
+	 * @param t
+	 *            hit distance
+	 * @param nx
+	 *            normal x
+	 * @param ny
+	 *            normal y
+	 * @param nz
+	 *            normal z, normal is normalized
+	 * @param object
+	 *            hit object
+	 * @return true if hit is recorded
+	 */
+	public boolean record(double t, double nx, double ny, double nz,
+			Renderable object) {
+		if (!(t < distance)) {
+			return false;
+		}
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		distance = t;
+		normalX = nx / length;
+		normalY = ny / length;
+		normalZ = nz / length;
+		this.object = object;
+		return true;
+	}
+
+	/**
+	 * Returns true if hit is recorded
+	 * 
+	 * @return true if there is hit
+	 */
+	public boolean isHit() {
+		return object != null;
+	}
+
+	/**
+	 * Returns distance of hit, max distance if there is no hit
+	 * 
+	 * @return distance
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	/**
+	 * Returns hit object
+	 * 
+	 * @return object, null if there is no hit
+	 */
+	public Renderable getObject() {
+		return object;
+	}
+
+	/**
+	 * Returns origin x
+	 * 
+	 * @return origin x
+	 */
+	public double getOriginX() {
+		return originX;
+	}
+
+	/**
+	 * Returns origin y
+	 * 
+	 * @return origin y
+	 */
+	public double getOriginY() {
+		return originY;
+	}
+
+	/**
+	 * Returns origin z
+	 * 
+	 * @return origin z
+	 */
+	public double getOriginZ() {
+		return originZ;
+	}
+
+	/**
+	 * Returns direction x
+	 * 
+	 * @return direction x
+	 */
+	public double getDirectionX() {
+		return directionX;
+	}
+
+	/**
+	 * Returns direction y
+	 * 
+	 * @return direction y
+	 */
+	public double getDirectionY() {
+		return directionY;
+	}
+
+	/**
+	 * Returns direction z
+	 * 
+	 * @return direction z
+	 */
+	public double getDirectionZ() {
+		return directionZ;
+	}
+
+	/**
+	 * Returns inverse of direction x, infinite if it is zero
+	 * 
+	 * @return inverse of direction x
+	 */
+	public double getInverseX() {
+		return inverseX;
+	}
+
+	/**
+	 * Returns inverse of direction y, infinite if it is zero
+	 * 
+	 * @return inverse of direction y
+	 */
+	public double getInverseY() {
+		return inverseY;
+	}
+
+	/**
+	 * Returns inverse of direction z, infinite if it is zero
+	 * 
+	 * @return inverse of direction z
+	 */
+	public double getInverseZ() {
+		return inverseZ;
+	}
+
+	/**
+	 * Returns x of hit point
+	 * 
+	 * @return x
+	 */
+	public double getX() {
+		return originX + distance * directionX;
+	}
+
+	/**
+	 * Returns y of hit point
+	 * 
+	 * @return y
+	 */
+	public double getY() {
+		return originY + distance * directionY;
+	}
+
+	/**
+	 * Returns z of hit point
+	 * 
+	 * @return z
+	 */
+	public double getZ() {
+		return originZ + distance * directionZ;
+	}
+
+	/**
+	 * Returns normal x
+	 * 
+	 * @return normal x
+	 */
+	public double getNormalX() {
+		return normalX;
+	}
+
+	/**
+	 * Returns normal y
+	 * 
+	 * @return normal y
+	 */
+	public double getNormalY() {
+		return normalY;
+	}
+
+	/**
+	 * Returns normal z
+	 * 
+	 * @return normal z
+	 */
+	public double getNormalZ() {
+		return normalZ;
+	}
+
+	/**
+	 * Returns traversal stack of at least given size, contents are kept
+	 * when it grows
+	 * 
+	 * @param size
+	 *            min size
+	 * @return stack
+	 */
+	int[] getStack(int size) {
+		if (stack.length < size) {
+			stack = Arrays.copyOf(stack, Math.max(size, 2 * stack.length));
+		}
+		return stack;
+	}
+
+	/**
+	 * Makes intersection info of hit
+	 * 
+	 * @return intersection info, null if there is no hit
+	 */
+	public IntersectionInfo toIntersectionInfo() {
+		if (object == null) {
+			return null;
+		}
+		return new IntersectionInfo(new Vertex(getX(), getY(), getZ()),
+				new Vector(normalX, normalY, normalZ), object);
+	}
+}
@@ -59,12 +59,12 @@ public class IntersectionInfo {
 
 	/**
 	 * Traces color using model info
-	 * @param objects Renderables
+	 * @param objects hierarchy of Renderables
 	 * @param lights Lights
 	 * @param ambient ambient color
 	 * @return color coefficients
 	 */
-	public Coefficient3D trace(Collection<Renderable> objects,
+	public Coefficient3D trace(BoundingVolumeHierarchy objects,
 			Collection<Light> lights, Coefficient3D ambient) {
 		return object.trace(this, objects, lights, ambient);
 	}
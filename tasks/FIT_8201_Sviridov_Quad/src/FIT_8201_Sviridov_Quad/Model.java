@@ -30,6 +30,8 @@ public class Model {
     private int ntree;
     private double znear;
     private double zfar;
+    // built over current positions of renderables, null if stale
+    private BoundingVolumeHierarchy hierarchy;
 
     /**
      * Class for data backup
@@ -181,6 +183,8 @@ public class Model {
             savedState.znear = this.znear;
             savedState.zfar = this.zfar;
         }
+
+        hierarchy = new BoundingVolumeHierarchy(renderables);
     }
 
     /**
@@ -218,6 +222,7 @@ public class Model {
         for (SceneObject so : getAllSceneObjects()) {
             so.transform(transformation);
         }
+        hierarchy = null;
     }
 
     /**
@@ -270,6 +275,21 @@ public class Model {
         return renderables;
     }
 
+    /**
+     * Returns bounding volume hierarchy over renderables, it is rebuilt if
+     * model was transformed since last call
+     * @return hierarchy
+     */
+    public BoundingVolumeHierarchy getHierarchy() {
+        if (!finished) {
+            throw new IllegalStateException("Model is not finished");
+        }
+        if (hierarchy == null) {
+            hierarchy = new BoundingVolumeHierarchy(renderables);
+        }
+        return hierarchy;
+    }
+
     /**
      * Returns ambient
      * @return ambient
@@ -394,5 +414,6 @@ public class Model {
         this.finished = savedState.finished;
         this.znear = savedState.znear;
         this.zfar = savedState.zfar;
+        this.hierarchy = null;
     }
 }
@@ -1,4 +1,5 @@
-package FIT_8201_Sviridov_Quad;import FIT_8201_Sviridov_Quad.primitives.Renderable;
+package FIT_8201_Sviridov_Quad;import FIT_8201_Sviridov_Quad.primitives.Quadric;
+import FIT_8201_Sviridov_Quad.primitives.Renderable;
 import FIT_8201_Sviridov_Quad.primitives.Sphere;
 import FIT_8201_Sviridov_Quad.primitives.Triangle;
 import FIT_8201_Sviridov_Quad.utils.LineParseUtils;
@@ -99,12 +100,29 @@ public class QuadPersistence {	/**
 			ColorModel colorModel = parseColorModel(bufferedReader);			
 			renderable = new Triangle(v[0], v[1], v[2], colorModel);			
 		} else if (obj.equals("QDR")) {
+			// upper triangle of quadric matrix by rows: 4, 3, 2 and 1
+			// coefficients
+			double coefficients[] = new double[10];
+			for (int row = 0, k = 0; row < 4; ++row) {
+				strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(
+						" ");
+				ds = strsToDoubles(strs, 4 - row);
+				for (int i = 0; i < 4 - row; ++i) {
+					coefficients[k++] = ds[i];
+				}
+			}
 			
+			// optional clipping box: min x, y, z and max x, y, z
+			BoundingBox clip = null;
 			strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
-			strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
-			strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
-			strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
-			parseColorModel(bufferedReader);
+			if (strs.length == 6) {
+				ds = strsToDoubles(strs, 6);
+				clip = new BoundingBox(ds[0], ds[1], ds[2], ds[3], ds[4], ds[5]);
+				strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(
+						" ");
+			}
+			ColorModel colorModel = parseColorModel(strs);			
+			renderable = new Quadric(coefficients, clip, colorModel);
 		} else if (obj.equals("SPH")) {
 			strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
 			ds = strsToDoubles(strs, 3);
@@ -129,10 +147,18 @@ public class QuadPersistence {	/**
 	 */
 	private static ColorModel parseColorModel(BufferedReader bufferedReader)
 			throws IOException {
-		String strs[] = null;
+		return parseColorModel(LineParseUtils.nextNormalizedLine(
+				bufferedReader).split(" "));
+	}
+	
+	/**
+	 * Parses ColorModel
+	 * @param strs strings of line
+	 * @return ColorModel
+	 */
+	private static ColorModel parseColorModel(String strs[]) {
 		double ds[] = null;
 		
-		strs = LineParseUtils.nextNormalizedLine(bufferedReader).split(" ");
 		ds = strsToDoubles(strs, 13);		Coefficient3D ambientCoefficient = new Coefficient3D(ds[0], ds[1],
 				ds[2]);
 		Coefficient3D diffuseCoefficient = new Coefficient3D(ds[3], ds[4],
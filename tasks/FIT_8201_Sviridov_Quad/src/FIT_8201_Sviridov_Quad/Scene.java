@@ -1,6 +1,5 @@
 package FIT_8201_Sviridov_Quad;
 
-import FIT_8201_Sviridov_Quad.primitives.Renderable;
 import FIT_8201_Sviridov_Quad.primitives.Segment;
 import FIT_8201_Sviridov_Quad.primitives.Wireframe;
 import FIT_8201_Sviridov_Quad.transformations.PerspectiveProjectionTransformation;
@@ -20,9 +19,9 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  * Class represents scene
@@ -32,6 +31,9 @@ import javax.swing.JPanel;
 public class Scene extends JPanel {
 
 	private static final long serialVersionUID = -2352068694402662403L;
+	// bound property fired on the event dispatch thread when rendering
+	// starts or finishes, its value is the result of isRendering()
+	public static final String RENDERING_PROPERTY = "rendering";
 
 	/**
 	 * Class to handle MouseMotion and MouseWheel events, alter settings of the
@@ -113,6 +115,7 @@ public class Scene extends JPanel {
 	private boolean renderablesVisible = true;
 	private boolean wireframeMode = true;
 	private BufferedImage renderedImage;
+	private TileRenderer renderer;
 	private MouseHandler mouseHandler = new MouseHandler();
 	private double rollCoef = 1.0;
 	private double rotateCoef = 1.0;
@@ -124,6 +127,7 @@ public class Scene extends JPanel {
 	 *            model
 	 */
 	public void setModel(Model model) {
+		cancelRendering();
 		this.model = model;
 		setBackground(model.getBackgroundColor());
 		repaint();
@@ -210,116 +214,56 @@ public class Scene extends JPanel {
 		g.translate(-halfWidth, -halfHeight);
 	}
 
-	private void render() {
-
-		double height = getHeight(), width = getWidth(), halfWidth = width / 2, halfHeight = height / 2, minSize = Math
-				.min(width, height);
-
-		Rect3D boxSize = model.getInitialBoxRect3D();
-		double sw = Math.max(boxSize.getHeight(), boxSize.getWidth()), sh = sw, znear = model
-				.getZnear(), gamma = model.getGamma();
-
-		double stepWidth = sw / (minSize + 1);
-		double stepHeight = sh / (minSize + 1);
-
-		List<Renderable> renderables = model.getRenderables();
-		List<Light> lights = model.getLights();
-		Coefficient3D ambientColor = model.getAmbient();
-
-		double R[][] = new double[(int) (width + 0.5)][(int) (height + 0.5)], G[][] = new double[(int) (width + 0.5)][(int) (height + 0.5)], B[][] = new double[(int) (width + 0.5)][(int) (height + 0.5)];
-		// fill with background color
-		Color backgroundColor = getBackground();
-		double backgroundRed = backgroundColor.getRed() / 255.0, backgroundGreen = backgroundColor
-				.getGreen() / 255.0, backgroundBlue = backgroundColor.getBlue() / 255.0;
-
-		for (int j = 0; j < R.length; ++j) {
-			for (int i = 0; i < R[0].length; ++i) {
-				R[j][i] = backgroundRed;
-				G[j][i] = backgroundGreen;
-				B[j][i] = backgroundBlue;
-			}
-		}
-
-		int halfWidthIntUp = (int) (halfWidth + 0.5), halfWidthIntDown = (int) (halfWidth), halfHeightIntUp = (int) (halfHeight + 0.5), halfHeightIntDown = (int) (halfHeight);
-
-		for (int w = -halfWidthIntUp; w < halfWidthIntDown; ++w) {
-			for (int h = -halfHeightIntUp; h < halfHeightIntDown; ++h) {
-				int j = w + halfWidthIntUp, i = h + halfHeightIntUp;
-				double y = h * stepHeight, x = w * stepWidth;
-
-				Ray ray = new Ray(new Vector(x, y, -znear));
-
-				List<IntersectionInfo> intersections = new ArrayList<IntersectionInfo>();
-				for (Renderable renderable : renderables) {
-					Collection<IntersectionInfo> ii = renderable.intersect(ray);
-					intersections.addAll(ii);
-				}
-
-				if (!intersections.isEmpty()) {
-					// find closest intersection
-					IntersectionInfo closestIntersection = null;
-					double closestDistance = Double.POSITIVE_INFINITY;
-					for (IntersectionInfo ii : intersections) {
-						if (ii.length() < closestDistance) {
-							closestIntersection = ii;
-							closestDistance = ii.length();
-						}
+	/**
+	 * Starts rendering of model in background, tiles are painted as they are
+	 * rendered
+	 */
+	private void startRendering() {
+		renderer = new TileRenderer(model, getWidth(), getHeight(),
+				getBackground(), new TileRenderer.Listener() {
+
+					@Override
+					public void tileRendered(int x, int y, int width,
+							int height) {
+						repaint(x, y, width, height);
 					}
-					// ask object to define its color
-					Coefficient3D objColor = closestIntersection.trace(
-							renderables, lights, ambientColor);
-
-					// set color to array
-					R[j][i] = objColor.getR();
-					G[j][i] = objColor.getG();
-					B[j][i] = objColor.getB();
-				}
-			}
-		}
-
-		double maxValue = Double.NEGATIVE_INFINITY;
-		for (int j = 0; j < R.length; ++j) {
-			for (int i = 0; i < R[0].length; ++i) {
-				if (R[j][i] > maxValue) {
-					maxValue = R[j][i];
-				}
-				if (B[j][i] > maxValue) {
-					maxValue = B[j][i];
-				}
-				if (G[j][i] > maxValue) {
-					maxValue = G[j][i];
-				}
-			}
-		}
-
-		for (int j = 0; j < R.length; ++j) {
-			for (int i = 0; i < R[0].length; ++i) {
-				R[j][i] /= maxValue;
-				G[j][i] /= maxValue;
-				B[j][i] /= maxValue;
-			}
-		}
-
-		for (int j = 0; j < R.length; ++j) {
-			for (int i = 0; i < R[0].length; ++i) {
-				R[j][i] = Math.min(1.0, Math.max(0, Math.pow(R[j][i], gamma)));
-				G[j][i] = Math.min(1.0, Math.max(0, Math.pow(G[j][i], gamma)));
-				B[j][i] = Math.min(1.0, Math.max(0, Math.pow(B[j][i], gamma)));
-			}
-		}
 
-		renderedImage = new BufferedImage((int) (width + 0.5),
-				(int) (height + 0.5), BufferedImage.TYPE_INT_ARGB);
+					@Override
+					public void renderingFinished(boolean cancelled) {
+						repaint();
+						SwingUtilities.invokeLater(new Runnable() {
+
+							@Override
+							public void run() {
+								// newer rendering may be started by now
+								firePropertyChange(RENDERING_PROPERTY, true,
+										isRendering());
+							}
+						});
+					}
+				});
+		renderedImage = renderer.getImage();
+		renderer.start();
+		firePropertyChange(RENDERING_PROPERTY, false, true);
+	}
 
-		for (int j = 0; j < R.length; ++j) {
-			for (int i = 0; i < R[0].length; ++i) {
-				renderedImage.setRGB(j, i, new Color(
-						(int) (R[j][i] * 255 + 0.5),
-						(int) (G[j][i] * 255 + 0.5),
-						(int) (B[j][i] * 255 + 0.5)).getRGB());
-			}
+	/**
+	 * Cancels rendering if it is in progress, already rendered tiles stay
+	 * visible
+	 */
+	public void cancelRendering() {
+		if (renderer != null) {
+			renderer.cancel();
 		}
+	}
 
+	/**
+	 * Returns true if rendering is in progress
+	 * 
+	 * @return true if rendering is in progress
+	 */
+	public boolean isRendering() {
+		return renderer != null && !renderer.isFinished();
 	}
 
 	/**
@@ -329,9 +273,7 @@ public class Scene extends JPanel {
 	 *            graphics
 	 */
 	private void paintRenderedImage(Graphics2D g) {
-		g.scale(1.0, -1.0);
-		g.drawImage(renderedImage, 0, -getHeight(), null);
-		g.scale(1.0, -1.0);
+		g.drawImage(renderedImage, 0, 0, null);
 	}
 
 	@Override
@@ -343,7 +285,7 @@ public class Scene extends JPanel {
 			paintWireframe(g);
 		} else {
 			if (renderedImage == null) {
-				render();
+				startRendering();
 			}
 			paintRenderedImage(g);
 		}
@@ -428,6 +370,9 @@ public class Scene extends JPanel {
 		this.wireframeMode = wireframeMode;
 		if (wireframeMode == false) {
 			renderedImage = null;
+		} else {
+			// model may be transformed in wireframe mode
+			cancelRendering();
 		}
 	}
 
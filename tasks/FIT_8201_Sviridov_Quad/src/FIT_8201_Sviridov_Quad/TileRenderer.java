@@ -0,0 +1,347 @@
+package FIT_8201_Sviridov_Quad;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class represents parallel ray tracer of model. Image is split into square
+ * tiles which are traced by work-stealing pool: ranges of tiles are halved
+ * recursively, so idle workers steal large halves from busy ones. Tiles are
+ * written straight into raster of output image and reported to listener as
+ * they finish, brightness of those previews is normalized by maximum found
+ * so far. When all tiles are traced the whole image is normalized by global
+ * maximum and gamma corrected. Rendering runs in background and can be
+ * cancelled
+ * 
+ * @author alstein
+ */
+public class TileRenderer {
+
+	/**
+	 * Listener of rendering progress, its methods are called from worker
+	 * threads
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when tile preview is written into image
+		 * 
+		 * @param x
+		 *            left column of tile
+		 * @param y
+		 *            top row of tile
+		 * @param width
+		 *            tile width
+		 * @param height
+		 *            tile height
+		 */
+		public void tileRendered(int x, int y, int width, int height);
+
+		/**
+		 * Called when rendering is finished or cancelled
+		 * 
+		 * @param cancelled
+		 *            true if rendering was cancelled
+		 */
+		public void renderingFinished(boolean cancelled);
+	}
+
+	public static final int TILE_SIZE = 32;
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private final Model model;
+	private final BoundingVolumeHierarchy hierarchy;
+	private final List<Light> lights;
+	private final Coefficient3D ambient;
+	private final double gamma;
+	private final double background[];
+	private final BufferedImage image;
+	private final int pixels[];
+	private final int width, height;
+	private final int tilesX, tilesY;
+	// camera parameters, pixel (j, i) counted from bottom left corner is
+	// traced through ((j - halfWidth) * stepWidth, (i - halfHeight) *
+	// stepHeight, -znear)
+	private final double znear, stepWidth, stepHeight;
+	private final int halfWidth, halfHeight;
+	// traced colors, 3 per pixel, rows from top to bottom
+	private final double colors[];
+	private final Listener listener;
+	private volatile boolean cancelled;
+	private volatile boolean finished;
+	// max color component traced so far
+	private double maxValue = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Tracing or tone mapping of range of tiles
+	 */
+	private class TileAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 6283064937530364918L;
+		private final int first, last;
+		private final boolean toneMapping;
+
+		/**
+		 * Ctor
+		 * 
+		 * @param first
+		 *            first tile (inclusive)
+		 * @param last
+		 *            last tile (exclusive)
+		 * @param toneMapping
+		 *            false to trace tiles, true to normalize them
+		 */
+		public TileAction(int first, int last, boolean toneMapping) {
+			this.first = first;
+			this.last = last;
+			this.toneMapping = toneMapping;
+		}
+
+		@Override
+		protected void compute() {
+			if (cancelled) {
+				return;
+			}
+			if (last - first > 1) {
+				int middle = (first + last) >>> 1;
+				invokeAll(new TileAction(first, middle, toneMapping),
+						new TileAction(middle, last, toneMapping));
+				return;
+			}
+			int x0 = (first % tilesX) * TILE_SIZE, y0 = (first / tilesX)
+					* TILE_SIZE;
+			int x1 = Math.min(x0 + TILE_SIZE, width), y1 = Math.min(y0
+					+ TILE_SIZE, height);
+			if (toneMapping) {
+				toneMap(x0, y0, x1, y1, getMaxValue());
+				return;
+			}
+			if (traceTile(x0, y0, x1, y1)) {
+				toneMap(x0, y0, x1, y1, getMaxValue());
+				listener.tileRendered(x0, y0, x1 - x0, y1 - y0);
+			}
+		}
+	}
+
+	/**
+	 * Ctor. Model must not be changed until rendering is finished
+	 * 
+	 * @param model
+	 *            model
+	 * @param width
+	 *            image width
+	 * @param height
+	 *            image height
+	 * @param backgroundColor
+	 *            background color
+	 * @param listener
+	 *            listener
+	 */
+	public TileRenderer(Model model, int width, int height,
+			Color backgroundColor, Listener listener) {
+		this.model = model;
+		this.hierarchy = model.getHierarchy();
+		// lights may be reset by model while cancelled tiles are finished
+		this.lights = new ArrayList<Light>(model.getLights());
+		this.ambient = model.getAmbient();
+		this.gamma = model.getGamma();
+		this.width = width;
+		this.height = height;
+		this.listener = listener;
+		tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+		tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+		Rect3D boxSize = model.getInitialBoxRect3D();
+		double sw = Math.max(boxSize.getHeight(), boxSize.getWidth()), sh = sw;
+		double minSize = Math.min(width, height);
+		znear = model.getZnear();
+		stepWidth = sw / (minSize + 1);
+		stepHeight = sh / (minSize + 1);
+		halfWidth = (int) (width / 2.0 + 0.5);
+		halfHeight = (int) (height / 2.0 + 0.5);
+
+		background = new double[] { backgroundColor.getRed() / 255.0,
+				backgroundColor.getGreen() / 255.0,
+				backgroundColor.getBlue() / 255.0 };
+		colors = new double[3 * width * height];
+
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+		int rgb = backgroundColor.getRGB();
+		for (int p = 0; p < pixels.length; ++p) {
+			pixels[p] = rgb;
+		}
+	}
+
+	/**
+	 * Returns output image, it is filled as tiles are rendered
+	 * 
+	 * @return image
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Returns model
+	 * 
+	 * @return model
+	 */
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Starts rendering in background
+	 */
+	public void start() {
+		pool.execute(new RecursiveAction() {
+
+			private static final long serialVersionUID = -1823744610716375637L;
+
+			@Override
+			protected void compute() {
+				int tiles = tilesX * tilesY;
+				try {
+					if (tiles > 0) {
+						new TileAction(0, tiles, false).invoke();
+						new TileAction(0, tiles, true).invoke();
+					}
+				} finally {
+					finished = true;
+					listener.renderingFinished(cancelled);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Cancels rendering, tiles being traced are completed
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns true if rendering was cancelled
+	 * 
+	 * @return true if rendering was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Returns true if rendering is finished or cancelled
+	 * 
+	 * @return true if rendering is finished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Returns max color component traced so far
+	 * 
+	 * @return max value
+	 */
+	private synchronized double getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * Updates max color component
+	 * 
+	 * @param value
+	 *            max value of tile
+	 */
+	private synchronized void updateMaxValue(double value) {
+		maxValue = Math.max(maxValue, value);
+	}
+
+	/**
+	 * Traces rays through pixels of tile
+	 * 
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @return false if rendering was cancelled
+	 */
+	private boolean traceTile(int x0, int y0, int x1, int y1) {
+		// records are reused by all rays of tile
+		HitRecord hit = new HitRecord(), shadow = new HitRecord();
+		double color[] = new double[3];
+		double max = Double.NEGATIVE_INFINITY;
+		for (int row = y0; row < y1; ++row) {
+			if (cancelled) {
+				return false;
+			}
+			int i = height - 1 - row;
+			double y = (i - halfHeight) * stepHeight;
+			for (int j = x0; j < x1; ++j) {
+				double x = (j - halfWidth) * stepWidth;
+				double r = background[0], g = background[1], b = background[2];
+
+				hit.setRay(0, 0, 0, x, y, -znear);
+				// find closest intersection
+				if (hierarchy.intersect(hit)) {
+					// ask object to define its color
+					hit.getObject().trace(hit, shadow, hierarchy, lights,
+							ambient, color);
+					r = color[0];
+					g = color[1];
+					b = color[2];
+				}
+
+				int p = 3 * (row * width + j);
+				colors[p] = r;
+				colors[p + 1] = g;
+				colors[p + 2] = b;
+				max = Math.max(max, Math.max(r, Math.max(g, b)));
+			}
+		}
+		updateMaxValue(max);
+		return true;
+	}
+
+	/**
+	 * Normalizes traced colors of tile by max value, applies gamma and
+	 * writes them into image
+	 * 
+	 * @param x0
+	 *            left column (inclusive)
+	 * @param y0
+	 *            top row (inclusive)
+	 * @param x1
+	 *            right column (exclusive)
+	 * @param y1
+	 *            bottom row (exclusive)
+	 * @param max
+	 *            max value
+	 */
+	private void toneMap(int x0, int y0, int x1, int y1, double max) {
+		for (int row = y0; row < y1; ++row) {
+			for (int j = x0; j < x1; ++j) {
+				int p = row * width + j;
+				int rgb = 0;
+				for (int c = 0; c < 3; ++c) {
+					double v = Math.min(1.0, Math.max(0,
+							Math.pow(colors[3 * p + c] / max, gamma)));
+					rgb = (rgb << 8) | (int) (v * 255 + 0.5);
+				}
+				pixels[p] = rgb;
+			}
+		}
+	}
+}
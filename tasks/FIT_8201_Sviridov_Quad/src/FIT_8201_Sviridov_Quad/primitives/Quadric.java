@@ -0,0 +1,480 @@
+package FIT_8201_Sviridov_Quad.primitives;
+
+import FIT_8201_Sviridov_Quad.BoundingBox;
+import FIT_8201_Sviridov_Quad.ColorModel;
+import FIT_8201_Sviridov_Quad.HitRecord;
+import FIT_8201_Sviridov_Quad.IntersectionInfo;
+import FIT_8201_Sviridov_Quad.Ray;
+import FIT_8201_Sviridov_Quad.Vector;
+import FIT_8201_Sviridov_Quad.Vertex;
+import FIT_8201_Sviridov_Quad.transformations.IdentityTransformation;
+import FIT_8201_Sviridov_Quad.transformations.Transformation;
+import FIT_8201_Sviridov_Quad.transformations.TranslationTransformation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Class represents Quadric, surface of points (x, y, z) where
+ * 
+ * <pre>
+ * a11 x^2 + a22 y^2 + a33 z^2 + 2 a12 xy + 2 a13 xz + 2 a23 yz
+ *     + 2 a14 x + 2 a24 y + 2 a34 z + a44 = 0
+ * </pre>
+ * 
+ * that is (x, y, z, 1) M (x, y, z, 1)^T = 0 for symmetric matrix M.
+ * Surface is clipped by box. Coefficients and box are kept in local
+ * coordinates, transformations of quadric are accumulated and rays are
+ * transformed into local coordinates instead, ray parameter is not changed
+ * by affine transformation. Wireframe is made of sections of surface by
+ * planes parallel to faces of box
+ * 
+ * @author alstein
+ */
+public class Quadric extends RenderableImpl {
+
+	/**
+	 * Clipping box of unbounded quadrics without given one
+	 */
+	public static final BoundingBox DEFAULT_CLIP = new BoundingBox(-1, -1,
+			-1, 1, 1, 1);
+	// number of sections per axis of wireframe
+	private static final int SECTIONS = 5;
+	// number of cells per side of section of wireframe
+	private static final int CELLS = 16;
+
+	private final double a11, a12, a13, a14, a22, a23, a24, a33, a34, a44;
+	// clipping box given to ctor, may be null
+	private final BoundingBox initialClip;
+	// clipping box in local coordinates
+	private final BoundingBox clip;
+	private final double minX, minY, minZ, maxX, maxY, maxZ;
+	// local to world transformation
+	private Transformation toWorld = new IdentityTransformation();
+	// world to local transformation, 3 rows of 4 elements
+	private double toLocal[] = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 };
+
+	/**
+	 * Ctor. Without clipping box ellipsoid is clipped by its own box and
+	 * other quadrics by DEFAULT_CLIP
+	 * 
+	 * @param coefficients
+	 *            a11 a12 a13 a14 a22 a23 a24 a33 a34 a44, upper triangle of
+	 *            M by rows
+	 * @param clip
+	 *            clipping box, may be null
+	 * @param colorModel
+	 *            colorModel
+	 */
+	public Quadric(double coefficients[], BoundingBox clip,
+			ColorModel colorModel) {
+		super(new ArrayList<Segment>(), colorModel);
+		a11 = coefficients[0];
+		a12 = coefficients[1];
+		a13 = coefficients[2];
+		a14 = coefficients[3];
+		a22 = coefficients[4];
+		a23 = coefficients[5];
+		a24 = coefficients[6];
+		a33 = coefficients[7];
+		a34 = coefficients[8];
+		a44 = coefficients[9];
+		initialClip = clip;
+
+		if (clip == null) {
+			clip = getEllipsoidBox();
+			if (clip == null) {
+				clip = DEFAULT_CLIP;
+			}
+		}
+		this.clip = clip;
+		minX = clip.getMin(0);
+		minY = clip.getMin(1);
+		minZ = clip.getMin(2);
+		maxX = clip.getMax(0);
+		maxY = clip.getMax(1);
+		maxZ = clip.getMax(2);
+
+		origin = new Vertex(clip.getCenter(0), clip.getCenter(1),
+				clip.getCenter(2));
+		for (int axis = 0; axis < 3; ++axis) {
+			for (int i = 0; i < SECTIONS; ++i) {
+				double w = clip.getMin(axis) + (i + 0.5)
+						* (clip.getMax(axis) - clip.getMin(axis)) / SECTIONS;
+				addSection(axis, w);
+			}
+		}
+		if (segments.isEmpty()) {
+			// nothing of surface is inside, box is shown
+			Transformation translation = new TranslationTransformation(
+					origin.getX(), origin.getY(), origin.getZ());
+			for (Segment s : Wireframe.box(maxX - minX, maxY - minY, maxZ
+					- minZ)) {
+				s.transform(translation);
+				segments.add(s);
+			}
+		}
+	}
+
+	/**
+	 * Returns coefficients
+	 * 
+	 * @return a11 a12 a13 a14 a22 a23 a24 a33 a34 a44
+	 */
+	public double[] getCoefficients() {
+		return new double[] { a11, a12, a13, a14, a22, a23, a24, a33, a34,
+				a44 };
+	}
+
+	/**
+	 * Returns clipping box in local coordinates
+	 * 
+	 * @return clipping box
+	 */
+	public BoundingBox getClip() {
+		return clip;
+	}
+
+	/**
+	 * Returns box of surface if it is real ellipsoid
+	 * 
+	 * @return box, null if surface is not ellipsoid
+	 */
+	private BoundingBox getEllipsoidBox() {
+		// leading minors of quadratic part
+		double d1 = a11, d2 = a11 * a22 - a12 * a12;
+		double c11 = a22 * a33 - a23 * a23, c12 = a13 * a23 - a12 * a33, c13 = a12
+				* a23 - a13 * a22;
+		double d3 = a11 * c11 + a12 * c12 + a13 * c13;
+		boolean definite = d2 > 0 && (d1 > 0 ? d3 > 0 : d3 < 0);
+		if (!definite) {
+			return null;
+		}
+		// inverse of quadratic part
+		double i11 = c11 / d3, i12 = c12 / d3, i13 = c13 / d3;
+		double i22 = (a11 * a33 - a13 * a13) / d3;
+		double i23 = (a12 * a13 - a11 * a23) / d3, i33 = d2 / d3;
+		double cx = -(i11 * a14 + i12 * a24 + i13 * a34), cy = -(i12 * a14
+				+ i22 * a24 + i23 * a34), cz = -(i13 * a14 + i23 * a24 + i33
+				* a34);
+		// surface is (p - c) A (p - c)^T = r
+		double r = -(a14 * cx + a24 * cy + a34 * cz) - a44;
+		double hx = r * i11, hy = r * i22, hz = r * i33;
+		if (!(hx > 0 && hy > 0 && hz > 0)) {
+			return null;
+		}
+		hx = Math.sqrt(hx);
+		hy = Math.sqrt(hy);
+		hz = Math.sqrt(hz);
+		return new BoundingBox(cx - hx, cy - hy, cz - hz, cx + hx, cy + hy,
+				cz + hz);
+	}
+
+	/**
+	 * Returns value of implicit form in local coordinates
+	 * 
+	 * @param x
+	 *            x
+	 * @param y
+	 *            y
+	 * @param z
+	 *            z
+	 * @return value
+	 */
+	private double value(double x, double y, double z) {
+		return a11 * x * x + a22 * y * y + a33 * z * z + 2
+				* (a12 * x * y + a13 * x * z + a23 * y * z + a14 * x + a24 * y
+						+ a34 * z) + a44;
+	}
+
+	/**
+	 * Adds section of surface by plane orthogonal to axis, section is
+	 * traced by marching squares over cells of clipping box face
+	 * 
+	 * @param axis
+	 *            0 for x, 1 for y, 2 for z
+	 * @param w
+	 *            coordinate of plane along axis
+	 */
+	private void addSection(int axis, double w) {
+		int u = (axis + 1) % 3, v = (axis + 2) % 3;
+		double u0 = clip.getMin(u), du = (clip.getMax(u) - u0) / CELLS;
+		double v0 = clip.getMin(v), dv = (clip.getMax(v) - v0) / CELLS;
+		double values[][] = new double[CELLS + 1][CELLS + 1];
+		for (int i = 0; i <= CELLS; ++i) {
+			for (int j = 0; j <= CELLS; ++j) {
+				Vertex p = makeVertex(axis, w, u0 + i * du, v0 + j * dv);
+				values[i][j] = value(p.getX(), p.getY(), p.getZ());
+			}
+		}
+
+		// corners of cell in order of traversal
+		int ci[] = { 0, 1, 1, 0 }, cj[] = { 0, 0, 1, 1 };
+		Vertex crossings[] = new Vertex[4];
+		for (int i = 0; i < CELLS; ++i) {
+			for (int j = 0; j < CELLS; ++j) {
+				int count = 0;
+				for (int k = 0; k < 4; ++k) {
+					int i0 = i + ci[k], j0 = j + cj[k];
+					int i1 = i + ci[(k + 1) % 4], j1 = j + cj[(k + 1) % 4];
+					double f0 = values[i0][j0], f1 = values[i1][j1];
+					if ((f0 < 0) == (f1 < 0)) {
+						continue;
+					}
+					double s = f0 / (f0 - f1);
+					crossings[count++] = makeVertex(axis, w, u0
+							+ (i0 + s * (i1 - i0)) * du, v0
+							+ (j0 + s * (j1 - j0)) * dv);
+				}
+				// saddle cell has 4 crossings, pairing does not matter
+				for (int k = 0; k + 1 < count; k += 2) {
+					segments.add(new Segment(crossings[k], crossings[k + 1]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes vertex from coordinates along axis of section and its plane
+	 * 
+	 * @param axis
+	 *            axis of section
+	 * @param w
+	 *            coordinate along axis
+	 * @param u
+	 *            coordinate along next axis
+	 * @param v
+	 *            coordinate along axis after next one
+	 * @return vertex
+	 */
+	private static Vertex makeVertex(int axis, double w, double u, double v) {
+		if (axis == 0) {
+			return new Vertex(w, u, v);
+		} else if (axis == 1) {
+			return new Vertex(v, w, u);
+		}
+		return new Vertex(u, v, w);
+	}
+
+	@Override
+	public Renderable clone() {
+		Quadric quadric = new Quadric(getCoefficients(), initialClip,
+				getColorModel());
+		List<Segment> segmentsCopy = new ArrayList<Segment>(segments.size());
+		for (Segment s : segments) {
+			segmentsCopy.add(s.clone());
+		}
+
+		quadric.origin = this.origin;
+		quadric.segments = segmentsCopy;
+		quadric.toWorld = new IdentityTransformation();
+		quadric.toWorld.compose(toWorld);
+		quadric.toLocal = toLocal.clone();
+		return quadric;
+	}
+
+	@Override
+	public void transform(Transformation transformation) {
+		super.transform(transformation);
+		toWorld.compose(transformation);
+		toLocal = invertAffine(toWorld.getMatrixRepresentation());
+	}
+
+	/**
+	 * Returns inverse of affine transformation matrix
+	 * 
+	 * @param m
+	 *            4x4 matrix with last row (0, 0, 0, 1)
+	 * @return 3 rows of 4 elements of inverse
+	 */
+	private static double[] invertAffine(double m[][]) {
+		double c00 = m[1][1] * m[2][2] - m[1][2] * m[2][1], c01 = m[0][2]
+				* m[2][1] - m[0][1] * m[2][2], c02 = m[0][1] * m[1][2]
+				- m[0][2] * m[1][1];
+		double c10 = m[1][2] * m[2][0] - m[1][0] * m[2][2], c11 = m[0][0]
+				* m[2][2] - m[0][2] * m[2][0], c12 = m[0][2] * m[1][0]
+				- m[0][0] * m[1][2];
+		double c20 = m[1][0] * m[2][1] - m[1][1] * m[2][0], c21 = m[0][1]
+				* m[2][0] - m[0][0] * m[2][1], c22 = m[0][0] * m[1][1]
+				- m[0][1] * m[1][0];
+		double det = m[0][0] * c00 + m[0][1] * c10 + m[0][2] * c20;
+		double r[] = { c00 / det, c01 / det, c02 / det, 0, c10 / det,
+				c11 / det, c12 / det, 0, c20 / det, c21 / det, c22 / det, 0 };
+		for (int i = 0; i < 3; ++i) {
+			r[4 * i + 3] = -(r[4 * i] * m[0][3] + r[4 * i + 1] * m[1][3]
+					+ r[4 * i + 2] * m[2][3]);
+		}
+		return r;
+	}
+
+	/**
+	 * Returns box of transformed clipping box
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		BoundingBox box = BoundingBox.EMPTY;
+		for (int k = 0; k < 8; ++k) {
+			Vertex corner = new Vertex((k & 1) == 0 ? minX : maxX,
+					(k & 2) == 0 ? minY : maxY, (k & 4) == 0 ? minZ : maxZ);
+			box = box.union(toWorld.apply(corner).normalize());
+		}
+		return box;
+	}
+
+	/**
+	 * Returns the closest intersection only
+	 */
+	@Override
+	public Collection<IntersectionInfo> intersect(Ray ray) {
+		List<IntersectionInfo> intersections = new ArrayList<IntersectionInfo>(
+				1);
+
+		Vector Rd = ray.getDirection();
+		Vertex R0 = ray.getOrigin();
+
+		HitRecord hit = new HitRecord();
+		hit.setRay(R0.getX(), R0.getY(), R0.getZ(), Rd.getX(), Rd.getY(),
+				Rd.getZ());
+		if (intersect(hit)) {
+			intersections.add(hit.toIntersectionInfo());
+		}
+		return intersections;
+	}
+
+	@Override
+	public boolean intersect(HitRecord hit) {
+		double ox = hit.getOriginX(), oy = hit.getOriginY(), oz = hit
+				.getOriginZ();
+		double dx = hit.getDirectionX(), dy = hit.getDirectionY(), dz = hit
+				.getDirectionZ();
+		double m[] = toLocal;
+
+		// ray in local coordinates, p + t q
+		double px = m[0] * ox + m[1] * oy + m[2] * oz + m[3], py = m[4] * ox
+				+ m[5] * oy + m[6] * oz + m[7], pz = m[8] * ox + m[9] * oy
+				+ m[10] * oz + m[11];
+		double qx = m[0] * dx + m[1] * dy + m[2] * dz, qy = m[4] * dx + m[5]
+				* dy + m[6] * dz, qz = m[8] * dx + m[9] * dy + m[10] * dz;
+
+		double mpx = a11 * px + a12 * py + a13 * pz + a14, mpy = a12 * px
+				+ a22 * py + a23 * pz + a24, mpz = a13 * px + a23 * py + a33
+				* pz + a34;
+		// a t^2 + 2 b t + c = 0
+		double a = qx * (a11 * qx + a12 * qy + a13 * qz) + qy
+				* (a12 * qx + a22 * qy + a23 * qz) + qz
+				* (a13 * qx + a23 * qy + a33 * qz);
+		double b = qx * mpx + qy * mpy + qz * mpz;
+		double c = px * mpx + py * mpy + pz * mpz + a14 * px + a24 * py + a34
+				* pz + a44;
+
+		double t1, t2;
+		if (a == 0) {
+			if (b == 0) {
+				return false;
+			}
+			t1 = t2 = -c / (2 * b);
+		} else {
+			double discriminantSquared = b * b - a * c;
+			if (discriminantSquared < 0) {
+				return false;
+			}
+			// root without cancellation, the other one by Vieta
+			double s = -(b + Math.copySign(Math.sqrt(discriminantSquared), b));
+			t1 = s / a;
+			t2 = s != 0 ? c / s : t1;
+			if (t1 > t2) {
+				double t = t1;
+				t1 = t2;
+				t2 = t;
+			}
+		}
+		return record(hit, t1, px, py, pz, qx, qy, qz)
+				|| record(hit, t2, px, py, pz, qx, qy, qz);
+	}
+
+	/**
+	 * Records root if it is in front of ray origin, closer than current hit
+	 * and inside clipping box
+	 * 
+	 * @param hit
+	 *            ray and its hit
+	 * @param t
+	 *            root
+	 * @param px
+	 *            local origin x
+	 * @param py
+	 *            local origin y
+	 * @param pz
+	 *            local origin z
+	 * @param qx
+	 *            local direction x
+	 * @param qy
+	 *            local direction y
+	 * @param qz
+	 *            local direction z
+	 * @return true if hit is recorded
+	 */
+	private boolean record(HitRecord hit, double t, double px, double py,
+			double pz, double qx, double qy, double qz) {
+		if (!(t > 0) || !(t < hit.getDistance())) {
+			return false;
+		}
+		double x = px + t * qx, y = py + t * qy, z = pz + t * qz;
+		if (x < minX || x > maxX || y < minY || y > maxY || z < minZ
+				|| z > maxZ) {
+			return false;
+		}
+
+		// gradient is normal in local coordinates, it is transformed by
+		// transposed inverse into world ones
+		double gx = a11 * x + a12 * y + a13 * z + a14, gy = a12 * x + a22
+				* y + a23 * z + a24, gz = a13 * x + a23 * y + a33 * z + a34;
+		double m[] = toLocal;
+		double nx = m[0] * gx + m[4] * gy + m[8] * gz, ny = m[1] * gx + m[5]
+				* gy + m[9] * gz, nz = m[2] * gx + m[6] * gy + m[10] * gz;
+		double dx = hit.getDirectionX(), dy = hit.getDirectionY(), dz = hit
+				.getDirectionZ();
+		if (nx == 0 && ny == 0 && nz == 0) {
+			// singular point as apex of cone
+			nx = -dx;
+			ny = -dy;
+			nz = -dz;
+		} else if (nx * dx + ny * dy + nz * dz > 0) {
+			nx = -nx;
+			ny = -ny;
+			nz = -nz;
+		}
+		return hit.record(t, nx, ny, nz, this);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(100);
+		double coefficients[] = getCoefficients();
+
+		sb.append("QDR\r\n");
+		// upper triangle of M by rows
+		for (int row = 0, k = 0; row < 4; ++row) {
+			for (int col = row; col < 4; ++col, ++k) {
+				if (col > row) {
+					sb.append(' ');
+				}
+				sb.append(coefficients[k]);
+			}
+			sb.append("\r\n");
+		}
+		if (initialClip != null) {
+			for (int k = 0; k < 6; ++k) {
+				if (k > 0) {
+					sb.append(' ');
+				}
+				sb.append(k < 3 ? initialClip.getMin(k) : initialClip
+						.getMax(k - 3));
+			}
+			sb.append("\r\n");
+		}
+		sb.append(getColorModel());
+		sb.append("\r\n");
+		return sb.toString();
+	}
+}
@@ -1,11 +1,15 @@
 package FIT_8201_Sviridov_Quad.primitives;
 
+import FIT_8201_Sviridov_Quad.BoundingBox;
+import FIT_8201_Sviridov_Quad.BoundingVolumeHierarchy;
 import FIT_8201_Sviridov_Quad.Coefficient3D;
+import FIT_8201_Sviridov_Quad.HitRecord;
 import FIT_8201_Sviridov_Quad.IntersectionInfo;
 import FIT_8201_Sviridov_Quad.Light;
 import FIT_8201_Sviridov_Quad.Ray;
 import FIT_8201_Sviridov_Quad.SceneObject;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Interface for Renderable object
@@ -20,15 +24,40 @@ public interface Renderable extends SceneObject, Cloneable {
 	 */
     public Collection<IntersectionInfo> intersect(Ray ray);
 
+    /**
+     * Intersects ray of hit record and records hit if it is closer than
+     * current one, nothing is allocated
+     * @param hit ray and its closest hit so far
+     * @return true if hit is recorded
+     */
+    public boolean intersect(HitRecord hit);
+
     /**
      * Traces color with given intersectionInfo
      * @param intersectionInfo intersection information
-     * @param objects renderable objects
+     * @param objects hierarchy of renderable objects
      * @param lights lights
      * @param ambient ambient color
      * @return color
      */
-    public abstract Coefficient3D trace(IntersectionInfo intersectionInfo, Collection<Renderable> objects, Collection<Light> lights, Coefficient3D ambient);
+    public abstract Coefficient3D trace(IntersectionInfo intersectionInfo, BoundingVolumeHierarchy objects, Collection<Light> lights, Coefficient3D ambient);
+
+    /**
+     * Traces color of hit, nothing is allocated
+     * @param hit hit of this object
+     * @param shadow record reused for shadow rays
+     * @param objects hierarchy of renderable objects
+     * @param lights lights
+     * @param ambient ambient color
+     * @param color array receiving red, green and blue
+     */
+    public void trace(HitRecord hit, HitRecord shadow, BoundingVolumeHierarchy objects, List<Light> lights, Coefficient3D ambient, double color[]);
+
+    /**
+     * Returns bounding box of current position
+     * @return bounding box
+     */
+    public BoundingBox getBoundingBox();
 
     /**
      * Return wireframe
@@ -1,13 +1,16 @@
 package FIT_8201_Sviridov_Quad.primitives;
 
+import FIT_8201_Sviridov_Quad.BoundingBox;
+import FIT_8201_Sviridov_Quad.BoundingVolumeHierarchy;
 import FIT_8201_Sviridov_Quad.Coefficient3D;
+import FIT_8201_Sviridov_Quad.HitRecord;
 import FIT_8201_Sviridov_Quad.ColorModel;
 import FIT_8201_Sviridov_Quad.IntersectionInfo;
 import FIT_8201_Sviridov_Quad.Light;
-import FIT_8201_Sviridov_Quad.Ray;
 import FIT_8201_Sviridov_Quad.Vector;
 import FIT_8201_Sviridov_Quad.Vertex;
 import FIT_8201_Sviridov_Quad.transformations.Transformation;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -49,6 +52,20 @@ public abstract class RenderableImpl extends Wireframe implements Renderable {
 		super.transform(transformation);
 	}
 
+	/**
+	 * Returns box of wireframe vertices, subclasses whose surface bulges
+	 * beyond their wireframe override it
+	 */
+	@Override
+	public BoundingBox getBoundingBox() {
+		BoundingBox box = BoundingBox.EMPTY;
+		for (Segment s : getSegments()) {
+			box = box.union(s.getStartVertex().normalize()).union(
+					s.getEndVertex().normalize());
+		}
+		return box;
+	}
+
 	/**
 	 * Ctor
 	 * 
@@ -107,12 +124,35 @@ public abstract class RenderableImpl extends Wireframe implements Renderable {
 
 	@Override
 	public Coefficient3D trace(IntersectionInfo intersectionInfo,
-			Collection<Renderable> objects, Collection<Light> lights,
+			BoundingVolumeHierarchy objects, Collection<Light> lights,
 			Coefficient3D ambient) {
-
+		Vertex p = intersectionInfo.getIntersection().normalize();
 		Vector n = intersectionInfo.getNormal();
-		Vertex p = intersectionInfo.getIntersection();
-		Vector e = new Vector(p, new Vertex(0, 0, 0)).normalize();
+		// zero distance along any direction gives the point itself
+		HitRecord hit = new HitRecord();
+		hit.setRay(p.getX(), p.getY(), p.getZ(), n.getX(), n.getY(), n.getZ());
+		hit.record(0, n.getX(), n.getY(), n.getZ(), this);
+
+		double color[] = new double[3];
+		trace(hit, new HitRecord(), objects, new ArrayList<Light>(lights),
+				ambient, color);
+		return new Coefficient3D(color[0], color[1], color[2]);
+	}
+
+	@Override
+	public void trace(HitRecord hit, HitRecord shadow,
+			BoundingVolumeHierarchy objects, List<Light> lights,
+			Coefficient3D ambient, double color[]) {
+
+		double px = hit.getX(), py = hit.getY(), pz = hit.getZ();
+		double nx = hit.getNormalX(), ny = hit.getNormalY(), nz = hit
+				.getNormalZ();
+		// direction to eye at (0, 0, 0)
+		double ex = -px, ey = -py, ez = -pz;
+		double eLength = Math.sqrt(ex * ex + ey * ey + ez * ez);
+		ex /= eLength;
+		ey /= eLength;
+		ez /= eLength;
 
 		ColorModel cm = getColorModel();
 
@@ -124,12 +164,17 @@ public abstract class RenderableImpl extends Wireframe implements Renderable {
 				.getG() * ambientCoefficient.getG(), B = ambient.getB()
 				* ambientCoefficient.getB();
 
-		lightCycle: for (Light light : lights) {
-			Vector l = new Vector(p, light.getOrigin());
+		for (int i = 0; i < lights.size(); ++i) {
+			Light light = lights.get(i);
+			Vertex lo = light.getOrigin();
+			double lx = lo.getX() - px, ly = lo.getY() - py, lz = lo.getZ()
+					- pz;
 
-			double distanceToLight = l.length();
-			l = l.normalize();
-			double nl = n.dot(l);
+			double distanceToLight = Math.sqrt(lx * lx + ly * ly + lz * lz);
+			lx /= distanceToLight;
+			ly /= distanceToLight;
+			lz /= distanceToLight;
+			double nl = nx * lx + ny * ly + nz * lz;
 
 			// is light visible?
 			// 1. it's on the right side
@@ -137,36 +182,25 @@ public abstract class RenderableImpl extends Wireframe implements Renderable {
 				continue;
 			}
 			// 2. it's not hidden by some other object
-			// check all the objects (except current one!) if they intersect
-			// ray from p to l and if so if there's at least one object
-			// that's closer to point than light source -- it's hidden
-			Ray ray = new Ray(p, l);
-			for (Renderable renderable : objects) {
-				if (renderable == this) {
-					continue;
-				}
-
-				Collection<IntersectionInfo> intersections = renderable
-						.intersect(ray);
-
-				for (IntersectionInfo ii : intersections) {
-					double distance = new Vector(p, ii.getIntersection())
-							.length();
-
-					if (distance < distanceToLight) {
-						continue lightCycle;
-					}
-				}
+			// find any object (except current one!) that intersects ray
+			// from p to l closer to point than light source -- it's hidden
+			shadow.setRay(px, py, pz, lx, ly, lz);
+			shadow.setMaxDistance(distanceToLight);
+			if (objects.isOccluded(shadow, this)) {
+				continue;
 			}
 
 			Coefficient3D I = light.getColor();
 
 			double fatt = 1.0 / (1 + distanceToLight);
 
-			Vector h = new Vector(l.getX() + e.getX(), l.getY() + e.getY(),
-					l.getZ() + e.getZ()).normalize();
+			double hx = lx + ex, hy = ly + ey, hz = lz + ez;
+			double hLength = Math.sqrt(hx * hx + hy * hy + hz * hz);
+			hx /= hLength;
+			hy /= hLength;
+			hz /= hLength;
 
-			double nhpow = Math.pow(n.dot(h), cm.getPower());
+			double nhpow = Math.pow(nx * hx + ny * hy + nz * hz, cm.getPower());
 
 			R += fatt
 					* I.getR()
@@ -182,6 +216,8 @@ public abstract class RenderableImpl extends Wireframe implements Renderable {
 							.getB() * nhpow);
 		}
 
-		return new Coefficient3D(R, G, B);
+		color[0] = R;
+		color[1] = G;
+		color[2] = B;
 	}
 }
@@ -1,6 +1,8 @@
 package FIT_8201_Sviridov_Quad.primitives;
 
+import FIT_8201_Sviridov_Quad.BoundingBox;
 import FIT_8201_Sviridov_Quad.ColorModel;
+import FIT_8201_Sviridov_Quad.HitRecord;
 import FIT_8201_Sviridov_Quad.IntersectionInfo;
 import FIT_8201_Sviridov_Quad.Ray;
 import FIT_8201_Sviridov_Quad.Vector;
@@ -46,6 +48,14 @@ public class Sphere extends RenderableImpl {
 		return sphere;
 	}
 
+	@Override
+	public BoundingBox getBoundingBox() {
+		Vertex c = origin.normalize();
+		double x = c.getX(), y = c.getY(), z = c.getZ();
+		return new BoundingBox(x - radius, y - radius, z - radius, x + radius,
+				y + radius, z + radius);
+	}
+
 	@Override
 	public Collection<IntersectionInfo> intersect(Ray ray) {
 		Vector rayDirection = ray.getDirection();
@@ -92,6 +102,38 @@ public class Sphere extends RenderableImpl {
 		return intersections;
 	}
 
+	@Override
+	public boolean intersect(HitRecord hit) {
+		double x0 = hit.getOriginX(), y0 = hit.getOriginY(), z0 = hit
+				.getOriginZ();
+		double xd = hit.getDirectionX(), yd = hit.getDirectionY(), zd = hit
+				.getDirectionZ();
+		double xc = origin.getX(), yc = origin.getY(), zc = origin.getZ();
+		double r = this.radius;
+
+		double B = 2 * (xd * x0 - xd * xc + yd * y0 - yd * yc + zd * z0 - zd
+				* zc), C = x0 * x0 - 2 * x0 * xc + xc * xc + y0 * y0 - 2 * y0
+				* yc + yc * yc + z0 * z0 - 2 * z0 * zc + zc * zc;
+
+		double discriminantSquared = B * B - 4 * (C - r * r);
+		if (discriminantSquared < 0) {
+			return false;
+		}
+		double discriminant = Math.sqrt(discriminantSquared);
+
+		// the nearer root in front of origin
+		double t = (-B - discriminant) / 2;
+		if (!(t > 0)) {
+			t = (-B + discriminant) / 2;
+			if (!(t > 0)) {
+				return false;
+			}
+		}
+		double xi = x0 + xd * t, yi = y0 + yd * t, zi = z0 + zd * t;
+		return hit.record(t, (xi - xc) / r, (yi - yc) / r, (zi - zc) / r,
+				this);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder(50);
@@ -0,0 +1,190 @@
+package FIT_8201_Sviridov_Quad.primitives;
+
+import FIT_8201_Sviridov_Quad.HitRecord;
+import FIT_8201_Sviridov_Quad.Ray;
+import FIT_8201_Sviridov_Quad.Vertex;
+
+/**
+ * Class represents triangles stored as structure of arrays. First vertex,
+ * two edges from it and unit normal of every triangle are precomputed and
+ * kept in separate coordinate arrays, so intersection of ray with triangles
+ * of neighbouring slots reads memory sequentially and computes no cross
+ * products but two. Rays are intersected by Moller-Trumbore test. Data is
+ * copied from triangles and must be set again after they are transformed
+ * 
+ * @author alstein
+ */
+public class TriangleBuffer {
+
+	private final double v0x[], v0y[], v0z[];
+	private final double e1x[], e1y[], e1z[];
+	private final double e2x[], e2y[], e2z[];
+	private final double nx[], ny[], nz[];
+	// length of cross product of edges, twice the area
+	private final double areas[];
+	private final Renderable objects[];
+
+	/**
+	 * Ctor, all slots are empty
+	 * 
+	 * @param capacity
+	 *            number of slots
+	 */
+	public TriangleBuffer(int capacity) {
+		v0x = new double[capacity];
+		v0y = new double[capacity];
+		v0z = new double[capacity];
+		e1x = new double[capacity];
+		e1y = new double[capacity];
+		e1z = new double[capacity];
+		e2x = new double[capacity];
+		e2y = new double[capacity];
+		e2z = new double[capacity];
+		nx = new double[capacity];
+		ny = new double[capacity];
+		nz = new double[capacity];
+		areas = new double[capacity];
+		objects = new Renderable[capacity];
+	}
+
+	/**
+	 * Returns number of slots
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return objects.length;
+	}
+
+	/**
+	 * Copies current vertices of triangle into slot, hits of slot report
+	 * triangle as hit object
+	 * 
+	 * @param index
+	 *            slot
+	 * @param triangle
+	 *            triangle
+	 */
+	public void set(int index, Triangle triangle) {
+		set(index, triangle.getVertex(0), triangle.getVertex(1),
+				triangle.getVertex(2), triangle);
+	}
+
+	/**
+	 * Precomputes edges and normal of triangle in slot
+	 * 
+	 * @param index
+	 *            slot
+	 * @param v1
+	 *            vertex 1
+	 * @param v2
+	 *            vertex 2
+	 * @param v3
+	 *            vertex 3
+	 * @param object
+	 *            hit object
+	 */
+	public void set(int index, Vertex v1, Vertex v2, Vertex v3,
+			Renderable object) {
+		double x = v1.getX(), y = v1.getY(), z = v1.getZ();
+		double ax = v2.getX() - x, ay = v2.getY() - y, az = v2.getZ() - z;
+		double bx = v3.getX() - x, by = v3.getY() - y, bz = v3.getZ() - z;
+		double cx = ay * bz - az * by, cy = az * bx - ax * bz, cz = ax * by
+				- ay * bx;
+		double area = Math.sqrt(cx * cx + cy * cy + cz * cz);
+
+		v0x[index] = x;
+		v0y[index] = y;
+		v0z[index] = z;
+		e1x[index] = ax;
+		e1y[index] = ay;
+		e1z[index] = az;
+		e2x[index] = bx;
+		e2y[index] = by;
+		e2z[index] = bz;
+		nx[index] = cx / area;
+		ny[index] = cy / area;
+		nz[index] = cz / area;
+		areas[index] = area;
+		objects[index] = object;
+	}
+
+	/**
+	 * Returns true if slot holds triangle
+	 * 
+	 * @param index
+	 *            slot
+	 * @return true if slot is set
+	 */
+	public boolean contains(int index) {
+		return objects[index] != null;
+	}
+
+	/**
+	 * Returns hit object of slot
+	 * 
+	 * @param index
+	 *            slot
+	 * @return object, null if slot is empty
+	 */
+	public Renderable getObject(int index) {
+		return objects[index];
+	}
+
+	/**
+	 * Intersects ray with triangle of slot and records hit if it is closer
+	 * than current one. Hits on edges and vertices are kept, so rays do not
+	 * leak between triangles sharing edge, former area test of projections
+	 * let some of them through as background. Rays parallel to triangle and
+	 * degenerate triangles are never hit. Normal of hit faces ray origin,
+	 * it is stored unit but {@link HitRecord#record} normalizes it again.
+	 * Nothing is allocated
+	 * 
+	 * @param index
+	 *            slot, it must be set
+	 * @param hit
+	 *            ray and its hit
+	 * @return true if hit is recorded
+	 */
+	public boolean intersect(int index, HitRecord hit) {
+		double dx = hit.getDirectionX(), dy = hit.getDirectionY(), dz = hit
+				.getDirectionZ();
+		double ax = e1x[index], ay = e1y[index], az = e1z[index];
+		double bx = e2x[index], by = e2y[index], bz = e2z[index];
+
+		double px = dy * bz - dz * by, py = dz * bx - dx * bz, pz = dx * by
+				- dy * bx;
+		// det is -(d . n) * area, so it is compared with the same
+		// tolerance as cosine of ray and plane
+		double det = ax * px + ay * py + az * pz;
+		if (!(Math.abs(det) > Ray.EPS * areas[index])) {
+			return false;
+		}
+		double inverse = 1 / det;
+
+		double sx = hit.getOriginX() - v0x[index], sy = hit.getOriginY()
+				- v0y[index], sz = hit.getOriginZ() - v0z[index];
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (u < 0 || u > 1) {
+			return false;
+		}
+		double qx = sy * az - sz * ay, qy = sz * ax - sx * az, qz = sx * ay
+				- sy * ax;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < 0 || u + v > 1) {
+			return false;
+		}
+		double t = (bx * qx + by * qy + bz * qz) * inverse;
+		if (t < 0 || !(t < hit.getDistance())) {
+			return false;
+		}
+
+		double x = nx[index], y = ny[index], z = nz[index];
+		if (dx * x + dy * y + dz * z > 0) {
+			x = -x;
+			y = -y;
+			z = -z;
+		}
+		return hit.record(t, x, y, z, objects[index]);
+	}
+}